@@ -161,7 +161,10 @@ public class EditFieldSampleActivity extends Activity {
 				if (editField.hasFocus()) {
 					try {
 						pauseTextChangeListener = true;
-						if (seekBar.moveTo(Integer.parseInt(s.toString()))) {
+						// isFeasible() rejects out of range values without
+						// moving any of the seek bars
+						final int value = Integer.parseInt(s.toString());
+						if (seekBar.isFeasible(value) && seekBar.moveTo(value)) {
 							validValue(seekBar, editField, s);
 						} else {
 							notValidValue();
@@ -0,0 +1,187 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * Solves drags on a worker thread so that large graphs do not hold up the UI
+ * thread. Each request copies the progress of the component and solves it
+ * against a {@link GraphSnapshot}. A newer request cancels the one in flight,
+ * and only the result of the latest request is posted back and applied to
+ * the DependentSeekBars, all in one update.
+ *
+ * If the dependencies or the progress of the component change while a solve
+ * is running, its result is dropped and the drag is solved again on the UI
+ * thread.
+ *
+ * The snapshot is solved the way {@link MinimalDisplacementSolver} solves the
+ * graph, so drags are only solved on the worker while that is the manager's
+ * solver. Anything else would move the bars differently from the solve on
+ * the UI thread when the thumb is let go. The snapshot moves a
+ * {@link DependentRangeSeekBar} as a whole, so dragging the lower end of a
+ * range, which leaves the upper end where it is, is solved on the UI thread
+ * as well.
+ *
+ * @see DependentSeekBarManager#setAsyncSolving(boolean)
+ */
+final class AsyncSolver {
+    private final DependentSeekBarManager manager;
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService worker;
+    private GraphSnapshot snapshot;
+    private DependentSeekBar pendingSeekBar;
+    private int pendingProgress;
+
+    AsyncSolver(DependentSeekBarManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Starts solving the move of seekBar to progress on the worker thread.
+     * Must be called on the UI thread.
+     *
+     * @return false if the component of seekBar cannot be solved on the
+     *         worker, in which case nothing was started
+     */
+    boolean submit(final DependentSeekBar seekBar, final int progress) {
+        if (!(manager.getConstraintSolver()
+                instanceof MinimalDisplacementSolver)) {
+            return false;
+        }
+        final Node node = seekBar.getNode();
+        if (node.getExtent() != 0) {
+            return false;
+        }
+        final int modelVersion = manager.getModelVersion();
+        if (snapshot == null || snapshot.getModelVersion() != modelVersion
+                || snapshot.indexOf(node) < 0) {
+            snapshot = GraphSnapshot.create(manager.getComponent(node),
+                    modelVersion);
+        }
+        if (!snapshot.isSupported()) {
+            return false;
+        }
+
+        final GraphSnapshot graph = snapshot;
+        final int source = graph.indexOf(node);
+        final int[] before = new int[graph.size()];
+        final int[] preferred = new int[graph.size()];
+        for (int i = 0; i < before.length; i++) {
+            final Node member = graph.getNode(i);
+            // The view of the dragged seek bar is already at progress
+            before[i] = i == source ? member.getOldProgress() : member
+                    .getProgress();
+            preferred[i] = member.inShiftEvent() && !member.isPinned() ? member
+                    .getPreferredProgress() : before[i];
+        }
+        final boolean shifting = manager.isShiftingAllowed();
+        final int componentStamp = manager.getComponentStamp(node);
+        final int expected = generation.incrementAndGet();
+        pendingSeekBar = seekBar;
+        pendingProgress = progress;
+
+        getWorker().execute(new Runnable() {
+            @Override
+            public void run() {
+                final int[] after = graph.solve(before, preferred, source,
+                        progress, shifting, generation, expected);
+                if (after == null) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation.get() != expected) {
+                            return;
+                        }
+                        pendingSeekBar = null;
+                        if (seekBar.getNode() != node
+                                || manager.getModelVersion() != modelVersion
+                                || manager.getComponentStamp(node)
+                                        != componentStamp) {
+                            seekBar.solveProgressChange(progress, true);
+                        } else {
+                            apply(graph, before, after, source);
+                        }
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Cancels the solve in flight for seekBar, if there is one, and solves
+     * the position it was requested for on the UI thread instead. Used when a
+     * drag ends, so that the final position is in place before the shift
+     * event ends.
+     */
+    void settle(DependentSeekBar seekBar) {
+        if (pendingSeekBar == seekBar) {
+            generation.incrementAndGet();
+            pendingSeekBar = null;
+            seekBar.solveProgressChange(pendingProgress, true);
+        }
+    }
+
+    /**
+     * Settles the solve in flight for any seek bar.
+     */
+    void settleAll() {
+        if (pendingSeekBar != null) {
+            settle(pendingSeekBar);
+        }
+    }
+
+    /**
+     * Settles the solve in flight and stops the worker thread. A later
+     * submit starts a new one.
+     */
+    void shutdown() {
+        settleAll();
+        snapshot = null;
+        if (worker != null) {
+            worker.shutdownNow();
+            worker = null;
+        }
+    }
+
+    private void apply(GraphSnapshot graph, int[] before, int[] after,
+            int source) {
+        final DependentSeekBar seekBar = graph.getNode(source).getSeekBar();
+        manager.beginUpdate();
+        for (int i = 0; i < after.length; i++) {
+            if (i != source && after[i] != before[i]) {
+                final Node member = graph.getNode(i);
+                member.joinShiftEvent();
+                member.writeProgress(after[i]);
+            }
+        }
+        seekBar.finishAsyncSolve(after[source]);
+        manager.endUpdate();
+        seekBar.dispatchProgressChanged(true);
+    }
+
+    private ExecutorService getWorker() {
+        if (worker == null) {
+            worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread thread = new Thread(r,
+                            "DependentSeekBar solver");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return worker;
+    }
+}
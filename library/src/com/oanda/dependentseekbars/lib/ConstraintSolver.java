@@ -0,0 +1,93 @@
+package com.oanda.dependentseekbars.lib;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+import com.oanda.dependentseekbars.lib.DependentSeekBar.Direction;
+
+/**
+ * Strategy used by a {@link DependentSeekBarManager} to decide how far a
+ * {@link DependentSeekBar} is allowed to move and which of the
+ * DependentSeekBars it depends on have to be shifted out of its way.
+ *
+ * The solver is chosen with
+ * {@link DependentSeekBarManager#setShiftMode(DependentSeekBarManager.ShiftMode)}.
+ * The default implementation is {@link GreedyConstraintSolver}. Solvers move
+ * nodes through package-private methods of {@link Node}, so they can only be
+ * implemented inside this package. Apps choose between the solvers of the
+ * library with the shift mode and can't supply their own.
+ *
+ * Solvers work on the {@link Node}s of the manager's graph rather than on the
+ * DependentSeekBars themselves, as a node only has a view while it is shown.
+ * See {@link DependentSeekBarManager#addVirtualSeekBar(int, int)}.
+ *
+ * @see GreedyConstraintSolver
+ */
+interface ConstraintSolver {
+
+    /**
+     * Determines if node can move the given displacement amount from
+     * oldProgress and if not, the furthest it can move. Any DependentSeekBars
+     * which are in the way are shifted as far as necessary when the manager
+     * allows shifting. When checkOnly is true, the other DependentSeekBars only
+     * have their temporary progress updated so that the movement can be
+     * reverted or committed afterwards.
+     *
+     * The progress of node itself is not changed, this is left up to the
+     * caller.
+     *
+     * @param node the node of the DependentSeekBar which is being moved
+     * @param displacement the distance node is being requested to move right
+     * @param oldProgress the current progress of node
+     * @param checkOnly true iff only a dry run should be performed
+     * @return 0 when it cannot move. An integer representing the amount it
+     *         can move otherwise. The integer will have the same sign as the
+     *         displacement provided.
+     */
+    int canMove(Node node, int displacement, int oldProgress,
+            boolean checkOnly);
+
+    /**
+     * Moves a whole {@link SeekBarGroup} by displacement as a single node,
+     * keeping the distances between the DependentSeekBars inside it, or as
+     * far as it can go. DependentSeekBars outside of the group are shifted as
+     * in {@link #canMove(Node, int, int, boolean)}. Unlike
+     * canMove, this also moves the members of the group themselves.
+     *
+     * @param group the group which is being moved
+     * @param displacement the distance the group is being requested to move
+     *        right
+     * @param checkOnly true iff only a dry run should be performed
+     * @return the distance the group has moved, with the same sign as
+     *         displacement, or 0
+     */
+    int canMoveGroup(SeekBarGroup group, int displacement, boolean checkOnly);
+
+    /**
+     * Attempt to move node and the nodes depending on it back to their
+     * preferred progress after node has moved in the given
+     * direction. This is only ever called while shifting is disabled on the
+     * manager.
+     *
+     * @param node the node which has just moved
+     * @param direction the direction node has moved in
+     */
+    void checkPreferredProgress(Node node, Direction direction);
+
+    /**
+     * Called when node starts a shift event, for example when the user starts
+     * dragging its DependentSeekBar. Until {@link #endShiftEvent(Node)} is
+     * called the dependencies don't change unless
+     * {@link DependentSeekBarManager#getModelVersion()} changes, so solvers
+     * can prepare work for the rest of the event here.
+     *
+     * @param node the node starting the shift event
+     */
+    void startShiftEvent(Node node);
+
+    /**
+     * Called when the shift event started by node ends. Anything prepared in
+     * {@link #startShiftEvent(Node)} should be released.
+     *
+     * @param node the node ending the shift event
+     */
+    void endShiftEvent(Node node);
+}
@@ -1,6 +1,10 @@
 package com.oanda.dependentseekbars.lib;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 
 import android.util.Log;
 
@@ -19,21 +23,75 @@ import android.util.Log;
  *   Greater Than: If SeekBar1 > SeekBar2, then Node1 is a child of Node2
  *   Less Than: If SeekBar1 < SeekBar2, then Node1 is a parent of Node2
  *
+ *  A third kind of relationship, Equal, ties SeekBar1 to SeekBar2 + offset.
+ *  Equal seek bars are not connected by edges. Instead they are collapsed into
+ *  one equality group, and the solvers move a whole group as if it were a
+ *  single node whose edges are the edges of all of its members.
+ *
+ *  A {@link SumConstraint} keeps the progresses of a group of nodes summing to
+ *  a fixed total. The members of such a group have no other dependencies.
+ *
+ *  A node may also cover a range of progress values, when it represents a
+ *  {@link DependentRangeSeekBar}. Less Than dependencies to other nodes then
+ *  apply to the upper end of the range.
+ *
+ *  Finally, nodes can be tasks in a {@link Lane}. Each task is linked to the
+ *  tasks before and after it in its lane, and these links act as Less Than
+ *  edges which require a gap of at least the earlier task's duration.
+ *
+ *  Nodes can be collected into nested {@link SeekBarGroup}s, which the solvers
+ *  move as a single node when they are pushed from outside. No path of edges
+ *  may leave a group and come back into it, and groups may not push each
+ *  other in a circle.
+ *
  * If the graph adds an edge that creates a cycle, an InconsistentGraphException
- * is thrown.
+ * is thrown. Since equality groups act as single nodes, this includes edges
+ * that would lead from an equality group back into itself.
+ *
+ * Connected components:
+ *
+ *  The graph keeps track of which nodes are (indirectly) related to each other
+ *  using a union-find structure. Adding an edge merges the components of its
+ *  endpoints, and removing a node splits its former component back up. Two
+ *  nodes in different components can never form a cycle, so the cycle check
+ *  is skipped for them, and operations on a single seek bar only ever need to
+ *  look at the nodes of its own component. Each component also has a stamp
+ *  which changes whenever the component or the progress of one of its nodes
+ *  changes, so values derived from a component can be cached against it.
+ *
+ * Views:
+ *
+ *  The state of every node is kept in a {@link ProgressStore} rather than in
+ *  its DependentSeekBar, and the solvers only work on nodes, so a node does
+ *  not need a view at all. A DependentSeekBar can be bound to a node later on
+ *  and moved to another node again, which is how a
+ *  {@link DependentSeekBarAdapter} shows a large model with only as many
+ *  views as fit on the screen.
  *
  */
 public class DependencyGraph {
     private ArrayList<Node> nodes;
-
-    public final static int CHECK_ALL_DEPENDENCIES = 0;
-    public final static int CHECK_GT_DEPENDENCIES = 1;
-    public final static int CHECK_LT_DEPENDENCIES = 2;
+    private HashMap<DependentSeekBar, Node> nodeLookup;
+    private final DependentSeekBarManager manager;
+    private int componentCount = 0;
+    private int stampCounter = 0;
+    private int visitCounter = 0;
+    private int groupCount = 0;
 
     private final boolean DEBUG = false;
 
     public DependencyGraph() {
+        this(null);
+    }
+
+    /**
+     * Creates a graph whose nodes solve their moves with manager.
+     * @param manager
+     */
+    DependencyGraph(DependentSeekBarManager manager) {
+        this.manager = manager;
         nodes = new ArrayList<Node>();
+        nodeLookup = new HashMap<DependentSeekBar, Node>();
     }
 
     /**
@@ -42,11 +100,58 @@ public class DependencyGraph {
      * @return The {@link Node} that has been added to the graph.
      */
     public Node addSeekBar(DependentSeekBar seekBar) {
-        Node node = new Node(seekBar);
+        Node node = add(new Node(seekBar));
+        nodeLookup.put(seekBar, node);
+        return node;
+    }
+
+    /**
+     * Adds a {@link Node} to the graph which has no {@link DependentSeekBar}
+     * yet, and keeps its state in slot of store.
+     * @param store
+     * @param slot
+     * @return The {@link Node} that has been added to the graph.
+     * @see #setSeekBar(Node, DependentSeekBar)
+     */
+    Node addNode(ProgressStore store, int slot) {
+        return add(new Node(store, slot));
+    }
+
+    private Node add(Node node) {
+        node.graphIndex = nodes.size();
         nodes.add(node);
+        node.componentStamp = ++stampCounter;
+        componentCount++;
         return node;
     }
 
+    /**
+     * Makes seekBar the view of node, replacing the one it had. The node
+     * keeps its state, so seekBar has to be bound to the node as well.
+     * @param node
+     * @param seekBar the new view of node, or null to leave it without one
+     * @see DependentSeekBar#bindNode(Node)
+     */
+    void setSeekBar(Node node, DependentSeekBar seekBar) {
+        if (node.seekBar != null) {
+            nodeLookup.remove(node.seekBar);
+        }
+        node.seekBar = seekBar;
+        if (seekBar != null) {
+            nodeLookup.put(seekBar, node);
+        }
+    }
+
+    /**
+     * Get the {@link Node} corresponding to seekBar.
+     * @param seekBar
+     * @return The {@link Node} representing seekBar in this graph, or null if
+     *         seekBar has not been added to the graph.
+     */
+    public Node getNode(DependentSeekBar seekBar) {
+        return nodeLookup.get(seekBar);
+    }
+
     /**
      * Removes the node representing the provided DependentSeekBar. If
      * restructureDependencies is true, then it will attempt to maintain
@@ -61,18 +166,47 @@ public class DependencyGraph {
     public void removeSeekBar(DependentSeekBar seekBar,
             boolean restructureDependencies) {
         // TODO add logic to restructure dependencies
-        Node seekNode = null;
-        for (Node node : nodes) {
-            if (node.sameSeekBar(seekBar)) {
-                seekNode = node;
-                break;
-            }
+        Node seekNode = nodeLookup.get(seekBar);
+        if (seekNode == null) {
+            return;
         }
-        for (Node node : nodes) {
+        removeNode(seekNode);
+    }
+
+    /**
+     * Removes seekNode and all of its dependencies from the graph.
+     * @param seekNode
+     */
+    void removeNode(Node seekNode) {
+        if (seekNode.seekBar != null) {
+            nodeLookup.remove(seekNode.seekBar);
+        }
+
+        // Only nodes in the same component can have an edge to seekNode
+        ArrayList<Node> component = findRoot(seekNode).componentMembers;
+        for (Node node : component) {
             node.removeDependencies(seekNode);
         }
 
-        nodes.remove(seekNode);
+        // The order of nodes doesn't matter, so the last node takes the place
+        // of the removed one
+        final Node last = nodes.remove(nodes.size() - 1);
+        if (last != seekNode) {
+            nodes.set(seekNode.graphIndex, last);
+            last.graphIndex = seekNode.graphIndex;
+        }
+        leaveEqualityGroup(seekNode);
+        if (seekNode.sumConstraint != null) {
+            seekNode.sumConstraint.remove(seekNode);
+            seekNode.sumConstraint = null;
+        }
+        unlinkFromLane(seekNode);
+        for (SeekBarGroup group = seekNode.group; group != null; group = group
+                .getParent()) {
+            group.getMembers().remove(seekNode);
+        }
+        seekNode.group = null;
+        splitComponent(component, seekNode);
     }
 
     /**
@@ -83,6 +217,11 @@ public class DependencyGraph {
      */
     public void addLessThanDependencies(DependentSeekBar dependent,
             DependentSeekBar[] limiting) throws InconsistentGraphException {
+        addLessThanDependencies(nodeLookup.get(dependent), getNodes(limiting));
+    }
+
+    void addLessThanDependencies(Node dependent, Node[] limiting)
+            throws InconsistentGraphException {
         for (int i = 0; i < limiting.length; i++) {
             addLessThanDependency(dependent, limiting[i]);
         }
@@ -94,26 +233,14 @@ public class DependencyGraph {
      *
      * This is used as a helper function for the public function of the same name.
      */
-    private void addLessThanDependency(DependentSeekBar dependent,
-            DependentSeekBar child) throws InconsistentGraphException {
-        Node dependNode = null, childNode = null;
+    private void addLessThanDependency(Node dependNode, Node childNode)
+            throws InconsistentGraphException {
         if (DEBUG) {
             Log.d("DependencyGraph", "addMaxDependency: size of nodes array="
                     + nodes.size());
             Log.d("DependencyGraph",
-                    "addMaxDependency: adding " + dependent.getProgress()
-                            + " < " + child.getProgress());
-        }
-        for (Node node : nodes) {
-            if (dependNode == null && node.sameSeekBar(dependent)) {
-                dependNode = node;
-            }
-            if (childNode == null && node.sameSeekBar(child)) {
-                childNode = node;
-            }
-            if (childNode != null && dependNode != null) {
-                break;
-            }
+                    "addMaxDependency: adding " + dependNode.getProgress()
+                            + " < " + childNode.getProgress());
         }
 
         // TODO remove when we are done
@@ -123,22 +250,27 @@ public class DependencyGraph {
                     + " has same parent and child.");
         }
 
+        checkNotInSumConstraint(dependNode, childNode);
         if (dependNode.containsChild(childNode)) {
             // dependency already exists, already done, return
             return;
         } else if (dependNode.equals(childNode)
-                || (dependNode.getProgress() >= childNode.getProgress())) {
+                || (dependNode.getProgress() + dependNode.getExtent() >= childNode
+                        .getProgress())) {
             throw new InconsistentGraphException(
                     "The dependency being added causes conflicts with the seekbar progresses");
-        } else if (containsCycle(childNode, CHECK_LT_DEPENDENCIES)) {
+        } else if (inSameComponent(dependNode, childNode)
+                && reaches(childNode, dependNode)) {
             throw new InconsistentGraphException(
                     "The dependency being added creates a circular dependency.");
         }
+        checkGroupsIntact(dependNode, childNode);
 
         // the graph will remain acyclic with the dependency edge, so it is safe
         // to add. Adds both directions of the edge.
         dependNode.addChild(childNode);
         childNode.addParent(dependNode);
+        unionComponents(dependNode, childNode);
     }
 
     /**
@@ -149,6 +281,12 @@ public class DependencyGraph {
      */
     public void addGreaterThanDependencies(DependentSeekBar dependent,
             DependentSeekBar[] limiting) throws InconsistentGraphException {
+        addGreaterThanDependencies(nodeLookup.get(dependent),
+                getNodes(limiting));
+    }
+
+    void addGreaterThanDependencies(Node dependent, Node[] limiting)
+            throws InconsistentGraphException {
         for (int i = 0; i < limiting.length; i++) {
             // adds dependencies, if there is an error, an
             // InconsistantGraphException is thrown
@@ -162,29 +300,14 @@ public class DependencyGraph {
      *
      * This is used as a helper function for the public function of the same name.
      */
-    private void addGreaterThanDependency(DependentSeekBar dependent,
-            DependentSeekBar parent) throws InconsistentGraphException {
+    private void addGreaterThanDependency(Node dependNode, Node parentNode)
+            throws InconsistentGraphException {
         if (DEBUG) {
             Log.d("DependencyGraph", "addMinDependency: size of nodes array="
                     + nodes.size());
             Log.d("DependencyGraph",
-                    "addMinDependency: adding " + dependent.getProgress()
-                            + " > " + parent.getProgress());
-        }
-        Node dependNode = null, parentNode = null;
-
-        // Searching for the dependNode and limitNode which correspond to
-        // dependent and limiting seek bars
-        for (Node node : nodes) {
-            if (dependNode == null && node.sameSeekBar(dependent)) {
-                dependNode = node;
-            }
-            if (parentNode == null && node.sameSeekBar(parent)) {
-                parentNode = node;
-            }
-            if (parentNode != null && dependNode != null) {
-                break;
-            }
+                    "addMinDependency: adding " + dependNode.getProgress()
+                            + " > " + parentNode.getProgress());
         }
 
         // TODO remove when we are done
@@ -194,154 +317,779 @@ public class DependencyGraph {
                     + " has same parent and child.");
         }
 
+        checkNotInSumConstraint(dependNode, parentNode);
         if (dependNode.containsParent(parentNode)) {
             // dependency already exists, already done, return
             return;
         } else if (dependNode.equals(parentNode)
-                || (dependNode.getProgress() <= parentNode.getProgress())) {
+                || (dependNode.getProgress() <= parentNode.getProgress()
+                        + parentNode.getExtent())) {
             throw new InconsistentGraphException(
                     "The dependency being added causes conflicts with the seekbar progresses");
-        } else if (containsCycle(parentNode, CHECK_GT_DEPENDENCIES)) {
+        } else if (inSameComponent(dependNode, parentNode)
+                && reaches(dependNode, parentNode)) {
             throw new InconsistentGraphException(
                     "The dependency being added creates a circular dependency.");
         }
+        checkGroupsIntact(parentNode, dependNode);
 
         // the graph will remain acyclic with the dependency edge, so it is safe
         // to add. Adds both directions of the edge.
         dependNode.addParent(parentNode);
         parentNode.addChild(dependNode);
+        unionComponents(dependNode, parentNode);
     }
 
-    /*
-     * Checks if a cycle exists containing limitingNode.
-     * This checks all dependencies of limitingNode for a cycle
+    /**
+     * Adds Equal dependencies between dependent {@link DependentSeekBar} and
+     * each of others, so that they always have the same progress.
+     * @param dependent
+     * @param others An array of {@link DependentSeekBar}s that will always have
+     *               the same progress as dependent.
+     * @throws InconsistentGraphException
      */
-    private boolean containsCycle(Node limitingNode){
-        return containsCycle(limitingNode, CHECK_ALL_DEPENDENCIES);
+    public void addEqualDependencies(DependentSeekBar dependent,
+            DependentSeekBar[] others) throws InconsistentGraphException {
+        addEqualDependencies(nodeLookup.get(dependent), getNodes(others));
     }
 
-    /*
-     * Checks if a cycle exists from limitingNode. Calls the helper function
-     * on each child of limitingNode.
+    void addEqualDependencies(Node dependent, Node[] others)
+            throws InconsistentGraphException {
+        for (int i = 0; i < others.length; i++) {
+            addEqualDependency(dependent, others[i], 0);
+        }
+    }
+
+    /**
+     * Adds an Equal dependency with a fixed offset, so that the progress of
+     * dependent is always the progress of other plus offset. The seek bars
+     * must already satisfy the dependency. Their equality groups are merged
+     * into one.
+     * @param dependent
+     * @param other
+     * @param offset
+     * @throws InconsistentGraphException if the progresses do not satisfy the
+     *         dependency, if the two seek bars are already related by a
+     *         different offset, or if they are ordered relative to each other
      */
-    private boolean containsCycle(Node limitingNode, int checkType) {
-        if(checkType != CHECK_GT_DEPENDENCIES){
-            for(Node child : limitingNode.getChildren()){
-                child.setVisited(false);
+    public void addEqualDependency(DependentSeekBar dependent,
+            DependentSeekBar other, int offset)
+            throws InconsistentGraphException {
+        addEqualDependency(nodeLookup.get(dependent), nodeLookup.get(other),
+                offset);
+    }
+
+    void addEqualDependency(Node dependNode, Node otherNode, int offset)
+            throws InconsistentGraphException {
+        checkNotInSumConstraint(dependNode, otherNode);
+        checkNotRange(dependNode);
+        checkNotRange(otherNode);
+        if (dependNode.getProgress() != otherNode.getProgress() + offset) {
+            throw new InconsistentGraphException(
+                    "The dependency being added causes conflicts with the seekbar progresses");
+        }
+        Node dependRoot = findEqualRoot(dependNode);
+        Node otherRoot = findEqualRoot(otherNode);
+        if (dependRoot == otherRoot) {
+            if (dependNode.equalOffset - otherNode.equalOffset != offset) {
+                throw new InconsistentGraphException(
+                        "The dependency being added conflicts with an existing equal dependency.");
             }
+            // dependency already exists, already done, return
+            return;
+        } else if (inSameComponent(dependNode, otherNode)
+                && (reaches(dependNode, otherNode)
+                        || reaches(otherNode, dependNode))) {
+            throw new InconsistentGraphException(
+                    "The dependency being added creates a circular dependency.");
+        } else if (dependNode.group != otherNode.group) {
+            throw new InconsistentGraphException(
+                    "Seek bars with an Equal dependency must be in the same group.");
+        }
+        // Both seek bars move as one, so paths into either of them continue
+        // out of the other
+        checkGroupsIntact(dependNode, otherNode);
+        checkGroupsIntact(otherNode, dependNode);
 
-            for (Node child : limitingNode.getChildren()) {
-                if (containsCycleHelper(limitingNode, child, CHECK_LT_DEPENDENCIES))
-                    return true;
+        // attach the smaller group to the larger one. The progress of every
+        // node is its root's progress plus its equalOffset
+        int rootOffset = otherNode.equalOffset + offset
+                - dependNode.equalOffset;
+        if (dependRoot.equalMembers.size() < otherRoot.equalMembers.size()) {
+            Node temp = dependRoot;
+            dependRoot = otherRoot;
+            otherRoot = temp;
+            rootOffset = -rootOffset;
+        }
+        // rootOffset is now progress(dependRoot) - progress(otherRoot)
+        otherRoot.equalParent = dependRoot;
+        otherRoot.equalOffset = -rootOffset;
+        dependRoot.equalMembers.addAll(otherRoot.equalMembers);
+        otherRoot.equalMembers = null;
+        unionComponents(dependNode, otherNode);
+    }
+
+    /**
+     * Adds a Less Than dependency from dependNode to childNode without any of
+     * the checks of {@link #addLessThanDependencies(Node, Node[])}. Only for
+     * restoring dependencies which were valid when they were saved.
+     * @param dependNode
+     * @param childNode
+     */
+    void restoreLessThanDependency(Node dependNode, Node childNode) {
+        dependNode.addChild(childNode);
+        childNode.addParent(dependNode);
+        unionComponents(dependNode, childNode);
+    }
+
+    /**
+     * Puts node, which has no Equal dependencies yet, in the equality group
+     * of root without any of the checks of
+     * {@link #addEqualDependency(Node, Node, int)}. Only for restoring
+     * dependencies which were valid when they were saved.
+     * @param node
+     * @param root the root of the group, which must be its own root
+     * @param offset progress of node - progress of root
+     */
+    void restoreEqualDependency(Node node, Node root, int offset) {
+        node.equalParent = root;
+        node.equalOffset = offset;
+        node.equalMembers = null;
+        root.equalMembers.add(node);
+        unionComponents(node, root);
+    }
+
+    private Node[] getNodes(DependentSeekBar[] seekBars) {
+        Node[] result = new Node[seekBars.length];
+        for (int i = 0; i < seekBars.length; i++) {
+            result[i] = nodeLookup.get(seekBars[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Adds a {@link SumConstraint} which keeps the progresses of seekBars
+     * summing to total.
+     * @param seekBars The {@link DependentSeekBar}s of the group. They must not
+     *                 have any dependencies yet.
+     * @param total
+     * @return The new constraint
+     * @throws InconsistentGraphException if the progresses of seekBars do not
+     *         sum to total, or one of them already has dependencies
+     */
+    public SumConstraint addSumConstraint(DependentSeekBar[] seekBars,
+            int total) throws InconsistentGraphException {
+        ArrayList<Node> members = new ArrayList<Node>(seekBars.length);
+        long sum = 0;
+        for (DependentSeekBar seekBar : seekBars) {
+            Node node = nodeLookup.get(seekBar);
+            if (node.sumConstraint != null || !node.children.isEmpty()
+                    || !node.parents.isEmpty() || node.lane != null
+                    || node.group != null
+                    || node.getEqualityGroup().size() > 1
+                    || node.getExtent() != 0 || members.contains(node)) {
+                throw new InconsistentGraphException(seekBar
+                        + " already has dependencies.");
             }
+            members.add(node);
+            sum += node.getProgress();
+        }
+        if (sum != total) {
+            throw new InconsistentGraphException(
+                    "The sum constraint being added conflicts with the seekbar progresses");
         }
-        
-        if(checkType != CHECK_LT_DEPENDENCIES){
 
-            for(Node parent : limitingNode.getParents()){
-                parent.setVisited(false);
+        SumConstraint constraint = new SumConstraint(members, total);
+        for (Node node : members) {
+            node.sumConstraint = constraint;
+            unionComponents(node, members.get(0));
+        }
+        return constraint;
+    }
+
+    /**
+     * Adds seekBar to lane as a task lasting for duration, starting at its
+     * current progress. The task must not overlap any task already in the
+     * lane.
+     * @param lane
+     * @param seekBar
+     * @param duration
+     * @throws InconsistentGraphException if the task overlaps another task,
+     *         seekBar is already in a lane or a {@link SumConstraint}, or the
+     *         lane would create a circular dependency
+     */
+    public void addToLane(Lane lane, DependentSeekBar seekBar, int duration)
+            throws InconsistentGraphException {
+        if (duration < 1) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        Node node = nodeLookup.get(seekBar);
+        if (node.lane != null) {
+            throw new InconsistentGraphException(seekBar
+                    + " is already in a lane.");
+        }
+        checkNotInSumConstraint(node, node);
+        checkNotRange(node);
+
+        final ArrayList<Node> tasks = lane.getTasks();
+        final int start = node.getProgress();
+        final int index = lane.indexAfter(start);
+        Node previous = index > 0 ? tasks.get(index - 1) : null;
+        Node next = index < tasks.size() ? tasks.get(index) : null;
+        if ((previous != null && previous.getProgress()
+                + previous.laneDuration > start)
+                || (next != null && start + duration > next.getProgress())) {
+            throw new InconsistentGraphException(
+                    "The task being added overlaps another task in the lane");
+        }
+        if ((previous != null && inSameComponent(node, previous) && reaches(
+                node, previous))
+                || (next != null && inSameComponent(node, next) && reaches(
+                        next, node))) {
+            throw new InconsistentGraphException(
+                    "The task being added creates a circular dependency.");
+        }
+        if (previous != null) {
+            checkGroupsIntact(previous, node);
+        }
+        if (next != null) {
+            checkGroupsIntact(node, next);
+        }
+
+        node.lane = lane;
+        node.laneDuration = duration;
+        node.lanePrevious = previous;
+        node.laneNext = next;
+        if (previous != null) {
+            previous.laneNext = node;
+            unionComponents(node, previous);
+        }
+        if (next != null) {
+            next.lanePrevious = node;
+            unionComponents(node, next);
+        }
+        tasks.add(index, node);
+    }
+
+    /**
+     * Removes seekBar from its {@link Lane}, if it is in one.
+     * @param seekBar
+     */
+    public void removeFromLane(DependentSeekBar seekBar) {
+        Node node = nodeLookup.get(seekBar);
+        if (node == null || node.lane == null) {
+            return;
+        }
+        ArrayList<Node> component = findRoot(node).componentMembers;
+        unlinkFromLane(node);
+        splitComponent(component, null);
+    }
+
+    /*
+     * Takes node out of its lane. The tasks before and after it become
+     * neighbours, which is safe as they were already ordered through node.
+     */
+    private void unlinkFromLane(Node node) {
+        if (node.lane == null) {
+            return;
+        }
+        if (node.lanePrevious != null) {
+            node.lanePrevious.laneNext = node.laneNext;
+        }
+        if (node.laneNext != null) {
+            node.laneNext.lanePrevious = node.lanePrevious;
+        }
+        node.lane.getTasks().remove(node);
+        node.lane = null;
+        node.lanePrevious = null;
+        node.laneNext = null;
+    }
+
+    /**
+     * Adds a {@link SeekBarGroup} made up of seekBars and the nested groups
+     * subgroups.
+     * @param seekBars {@link DependentSeekBar}s which are not in a group yet
+     * @param subgroups Groups which are not nested in another group yet
+     * @return The new group
+     * @throws InconsistentGraphException if a seek bar or subgroup is already
+     *         part of a group, a seek bar has a {@link SumConstraint}, a seek
+     *         bar is tied by an Equal dependency to one outside of the group,
+     *         or a path of dependencies leaves the group and comes back into
+     *         it, directly or through other groups
+     */
+    public SeekBarGroup addGroup(DependentSeekBar[] seekBars,
+            SeekBarGroup[] subgroups) throws InconsistentGraphException {
+        ArrayList<Node> members = new ArrayList<Node>();
+        for (SeekBarGroup subgroup : subgroups) {
+            if (subgroup.getParent() != null) {
+                throw new InconsistentGraphException(
+                        "The group is already nested in another group.");
+            }
+            members.addAll(subgroup.getMembers());
+        }
+        for (DependentSeekBar seekBar : seekBars) {
+            Node node = nodeLookup.get(seekBar);
+            if (node.group != null) {
+                throw new InconsistentGraphException(seekBar
+                        + " is already in a group.");
             }
+            checkNotInSumConstraint(node, node);
+            members.add(node);
+        }
+        HashSet<Node> inside = new HashSet<Node>(members);
+        if (members.isEmpty() || inside.size() != members.size()) {
+            throw new IllegalArgumentException(
+                    "A group needs distinct seek bars or groups");
+        }
+        for (Node member : members) {
+            for (Node equal : member.getEqualityGroup()) {
+                if (!inside.contains(equal)) {
+                    throw new InconsistentGraphException(member.getSeekBar()
+                            + " has an Equal dependency to a seek bar outside of the group.");
+                }
+            }
+        }
 
-            for (Node parent : limitingNode.getParents()) {
-                if (containsCycleHelper(limitingNode, parent, CHECK_GT_DEPENDENCIES))
+        SeekBarGroup group = new SeekBarGroup(members);
+        for (SeekBarGroup subgroup : subgroups) {
+            subgroup.setParent(group);
+        }
+        for (DependentSeekBar seekBar : seekBars) {
+            nodeLookup.get(seekBar).group = group;
+        }
+        // The new group moves as one among the rest of the graph, so no path
+        // may lead out of it and back in
+        if (returnsTo(members.get(0), members.get(0), null)) {
+            for (SeekBarGroup subgroup : subgroups) {
+                subgroup.setParent(null);
+            }
+            for (DependentSeekBar seekBar : seekBars) {
+                nodeLookup.get(seekBar).group = null;
+            }
+            throw new InconsistentGraphException(
+                    "A path of dependencies leaves the group and comes back into it.");
+        }
+        for (Node member : members) {
+            unionComponents(member, members.get(0));
+        }
+        groupCount++;
+        return group;
+    }
+
+    /*
+     * Checks that an edge from from to to does not make groups push each
+     * other in a circle. Only the parts of the innermost group containing
+     * both ends can be affected. Only done once the graph has groups.
+     */
+    private void checkGroupsIntact(Node from, Node to)
+            throws InconsistentGraphException {
+        if (groupCount == 0) {
+            return;
+        }
+        SeekBarGroup level = from.group;
+        while (level != null && !level.contains(to)) {
+            level = level.getParent();
+        }
+        if (returnsTo(to, from, level)) {
+            throw new InconsistentGraphException(
+                    "The dependency being added makes groups push each other in a circle.");
+        }
+    }
+
+    /*
+     * Checks whether a path of edges leads from the part of level containing
+     * from to the part containing to, where the parts of a group are its
+     * nested groups and its nodes outside of those, and the parts of the top
+     * level (null) are the outermost groups and the ungrouped nodes. A group
+     * moves as one, so reaching any of its nodes continues from all of them.
+     * If both nodes are in the same part, the path has to leave the part and
+     * come back. Paths never leave level, as no path may leave a group and
+     * come back into it.
+     */
+    private boolean returnsTo(Node from, Node to, SeekBarGroup level) {
+        final Object start = partOf(from, level);
+        final Object target = partOf(to, level);
+        final int stamp = ++visitCounter;
+        ArrayList<Node> stack = new ArrayList<Node>();
+        visitPart(start, from, stamp, stack);
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+            final boolean outside = partOf(node, level) != start;
+            for (Node next : node.getSuccessors()) {
+                if (level != null && !level.contains(next)) {
+                    continue;
+                }
+                final Object part = partOf(next, level);
+                if (part == target && (part != start || outside)) {
                     return true;
+                }
+                if (part != start && next.visitStamp != stamp) {
+                    visitPart(part, next, stamp, stack);
+                }
             }
         }
         return false;
     }
 
-    private boolean containsCycleHelper(Node startingNode, Node currentNode, int checkType){
-        boolean containsCycle = false;
-        if (currentNode.equals(startingNode)) {
-            containsCycle = true;
-        } else if (currentNode.isVisited()) {
-            containsCycle = false;
-        }else {
-            currentNode.setVisited(true);
-            ArrayList<Node> nodesToCheck;
-            if(checkType == CHECK_LT_DEPENDENCIES)
-                nodesToCheck = currentNode.getChildren();
-            else{
-                nodesToCheck = currentNode.getParents();
-            }
-
-            for (Node child : nodesToCheck) {
-                if (containsCycleHelper(startingNode, child, checkType)) {
-                    containsCycle = true;
+    private static void visitPart(Object part, Node node, int stamp,
+            ArrayList<Node> stack) {
+        if (part instanceof SeekBarGroup) {
+            SeekBarGroup group = (SeekBarGroup) part;
+            if (group.visitStamp == stamp) {
+                return;
+            }
+            group.visitStamp = stamp;
+            for (Node member : group.getMembers()) {
+                member.visitStamp = stamp;
+                stack.add(member);
+            }
+        } else {
+            node.visitStamp = stamp;
+            stack.add(node);
+        }
+    }
+
+    /*
+     * The part of level node belongs to: the group nested directly in level
+     * which contains node, or node itself if it is not in such a group.
+     */
+    private static Object partOf(Node node, SeekBarGroup level) {
+        SeekBarGroup part = node.group;
+        if (part == level) {
+            return node;
+        }
+        while (part.getParent() != level) {
+            part = part.getParent();
+        }
+        return part;
+    }
+
+    private void checkNotRange(Node node) throws InconsistentGraphException {
+        if (node.getExtent() != 0) {
+            throw new InconsistentGraphException(node.getSeekBar()
+                    + " is a range, which can only have Less Than and Greater Than dependencies.");
+        }
+    }
+
+    private void checkNotInSumConstraint(Node a, Node b)
+            throws InconsistentGraphException {
+        if (a.sumConstraint != null || b.sumConstraint != null) {
+            throw new InconsistentGraphException(
+                    "Seek bars with a sum constraint can't have other dependencies.");
+        }
+    }
+
+    /**
+     * Checks if two nodes are tied together by Equal dependencies.
+     * @param a
+     * @param b
+     * @return true iff a and b are in the same equality group
+     */
+    public boolean inSameEqualityGroup(Node a, Node b) {
+        return findEqualRoot(a) == findEqualRoot(b);
+    }
+
+    /*
+     * Checks whether the equality group of to can be reached from the equality
+     * group of from by following child edges, which means that an edge from to
+     * to from would close a cycle. Edges of every member of a group are
+     * followed, as the solvers move the group as a single node, and so are the
+     * links to the next task in a lane.
+     */
+    private boolean reaches(Node from, Node to) {
+        Node target = findEqualRoot(to);
+        int stamp = ++visitCounter;
+        ArrayList<Node> stack = new ArrayList<Node>();
+        Node start = findEqualRoot(from);
+        start.visitStamp = stamp;
+        stack.add(start);
+        while (!stack.isEmpty()) {
+            Node root = stack.remove(stack.size() - 1);
+            if (root == target) {
+                return true;
+            }
+            for (Node member : root.equalMembers) {
+                for (Node child : member.children) {
+                    Node childRoot = findEqualRoot(child);
+                    if (childRoot.visitStamp != stamp) {
+                        childRoot.visitStamp = stamp;
+                        stack.add(childRoot);
+                    }
+                }
+                if (member.laneNext != null) {
+                    Node nextRoot = findEqualRoot(member.laneNext);
+                    if (nextRoot.visitStamp != stamp) {
+                        nextRoot.visitStamp = stamp;
+                        stack.add(nextRoot);
+                    }
                 }
             }
         }
-        return containsCycle;
+        return false;
+    }
+
+    /**
+     * Checks if two nodes are connected to each other through dependencies,
+     * either directly or indirectly.
+     * @param a
+     * @param b
+     * @return true iff a and b are in the same connected component
+     */
+    public boolean inSameComponent(Node a, Node b) {
+        return findRoot(a) == findRoot(b);
     }
 
-    //Removes the limiting DependentSeekBar dependencies from dependent
-    private void revertMaxAdditions(DependentSeekBar dependent,
-            DependentSeekBar[] limiting, int max) {
-        Node dependNode = null;
+    /**
+     * Get all of the nodes in the connected component which contains node.
+     * The returned list is a read only view of the graph's internal state and
+     * must not be held on to after the graph is modified.
+     * @param node
+     * @return List of every node that node is (indirectly) related to,
+     *         including node itself
+     */
+    public List<Node> getComponent(Node node) {
+        return Collections.unmodifiableList(findRoot(node).componentMembers);
+    }
+
+    /**
+     * Get the connected components of the graph. Each component is a list of
+     * nodes which have no dependencies on nodes outside of the component, so
+     * they can be worked on independently of each other.
+     * @return List of the connected components in the graph
+     */
+    public ArrayList<List<Node>> getComponents() {
+        ArrayList<List<Node>> components = new ArrayList<List<Node>>(
+                componentCount);
         for (Node node : nodes) {
-            if (node.sameSeekBar(dependent)) {
-                dependNode = node;
-                break;
+            if (node.componentParent == node) {
+                components.add(Collections
+                        .unmodifiableList(node.componentMembers));
             }
         }
-        for (int i = 0; i < max; i++) {
-            for (Node node : nodes) {
-                if (node.sameSeekBar(limiting[i])) {
-                    dependNode.removeChild(node);
-                    node.removeParent(dependNode);
-                }
+        return components;
+    }
+
+    /**
+     * Get the stamp of the component containing node. The stamp changes
+     * whenever nodes or edges are added to or removed from the component, or
+     * {@link #touchComponent(Node)} is called on one of its nodes.
+     * @param node
+     * @return the current stamp of node's component
+     */
+    public int getComponentStamp(Node node) {
+        return findRoot(node).componentStamp;
+    }
+
+    /**
+     * Marks the component containing node as changed, for example because
+     * the progress of node has changed.
+     * @param node
+     */
+    public void touchComponent(Node node) {
+        findRoot(node).componentStamp = ++stampCounter;
+    }
+
+    /**
+     * @return the number of connected components in the graph
+     */
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    /*
+     * Finds the representative node of node's component, compressing the path
+     * along the way.
+     */
+    private Node findRoot(Node node) {
+        Node root = node;
+        while (root.componentParent != root) {
+            root = root.componentParent;
+        }
+        while (node != root) {
+            Node next = node.componentParent;
+            node.componentParent = root;
+            node = next;
+        }
+        return root;
+    }
+
+    /*
+     * Merges the components of a and b. The smaller component is attached to
+     * the larger one so that both the tree depth and the number of members
+     * that have to be moved stay small.
+     */
+    private void unionComponents(Node a, Node b) {
+        Node rootA = findRoot(a);
+        Node rootB = findRoot(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (rootA.componentMembers.size() < rootB.componentMembers.size()) {
+            Node temp = rootA;
+            rootA = rootB;
+            rootB = temp;
+        }
+        rootB.componentParent = rootA;
+        rootA.componentMembers.addAll(rootB.componentMembers);
+        rootB.componentMembers = null;
+        rootA.componentStamp = ++stampCounter;
+        componentCount--;
+    }
+
+    /*
+     * Finds the representative node of node's equality group. Path compression
+     * keeps equalOffset relative to the new parent, which is the root.
+     */
+    private Node findEqualRoot(Node node) {
+        Node parent = node.equalParent;
+        if (parent == node) {
+            return node;
+        }
+        Node root = findEqualRoot(parent);
+        if (parent != root) {
+            node.equalOffset += parent.equalOffset;
+            node.equalParent = root;
+        }
+        return root;
+    }
 
+    /*
+     * Takes a removed node out of its equality group. The remaining members
+     * stay equal to each other. If node was the root, the next member takes
+     * over and the offsets are rebased onto it.
+     */
+    private void leaveEqualityGroup(Node node) {
+        Node root = findEqualRoot(node);
+        if (root.equalMembers.size() == 1) {
+            return;
+        }
+        for (Node member : root.equalMembers) {
+            findEqualRoot(member);
+        }
+        root.equalMembers.remove(node);
+        if (node == root) {
+            Node newRoot = root.equalMembers.get(0);
+            int base = newRoot.equalOffset;
+            for (Node member : root.equalMembers) {
+                member.equalParent = newRoot;
+                member.equalOffset -= base;
             }
+            newRoot.equalMembers = root.equalMembers;
         }
+        node.equalParent = node;
+        node.equalOffset = 0;
+        node.equalMembers = new ArrayList<Node>(1);
+        node.equalMembers.add(node);
     }
 
-    //Removes the limiting DependentSeekBar dependencies from dependent
-    private void revertMinAdditions(DependentSeekBar dependent,
-            DependentSeekBar[] limiting, int max) {
-        Node dependNode = null;
-        for (Node node : nodes) {
-            if (node.sameSeekBar(dependent)) {
-                dependNode = node;
-                break;
+    /*
+     * Union-find cannot split a component, so after edges are removed the
+     * component which used to contain them is rebuilt from its remaining
+     * edges. Only the members of that component are touched.
+     */
+    private void splitComponent(ArrayList<Node> members, Node removed) {
+        componentCount--;
+        for (Node member : members) {
+            member.componentParent = member;
+            member.componentMembers = null;
+        }
+        for (Node member : members) {
+            if (member != removed) {
+                member.componentMembers = new ArrayList<Node>(1);
+                member.componentMembers.add(member);
+                member.componentStamp = ++stampCounter;
+                componentCount++;
             }
         }
-        for (int i = 0; i < max; i++) {
-            for (Node node : nodes) {
-                if (node.sameSeekBar(limiting[i])) {
-                    dependNode.removeParent(node);
-                    node.removeChild(dependNode);
+        for (Node member : members) {
+            if (member == removed) {
+                continue;
+            }
+            for (Node child : member.getChildren()) {
+                unionComponents(member, child);
+            }
+            unionComponents(member, findEqualRoot(member));
+            if (member.sumConstraint != null) {
+                unionComponents(member, member.sumConstraint.getMembers()
+                        .get(0));
+            }
+            if (member.laneNext != null) {
+                unionComponents(member, member.laneNext);
+            }
+            if (member.group != null) {
+                SeekBarGroup outermost = member.group;
+                while (outermost.getParent() != null) {
+                    outermost = outermost.getParent();
                 }
-
+                unionComponents(member, outermost.getMembers().get(0));
             }
         }
     }
 
     /**
      * Node in the graph. Each node contains the corresponding DependentSeekBar,
-     * and a list of direct children and parents.
+     * if it has one, and a list of direct children and parents. The node also
+     * carries out the moves the solvers decide on, so that they work the same
+     * whether or not the node has a view.
      */
     public class Node {
         private ArrayList<Node> children;
         private ArrayList<Node> parents;
         private DependentSeekBar seekBar;
-        private boolean visited = false;
+        private Node componentParent;
+        private ArrayList<Node> componentMembers;
+        private int componentStamp;
+        private Node equalParent;
+        private int equalOffset;
+        private ArrayList<Node> equalMembers;
+        private int visitStamp;
+        private SumConstraint sumConstraint;
+        private Lane lane;
+        private int laneDuration;
+        private Node lanePrevious;
+        private Node laneNext;
+        private SeekBarGroup group;
+        private int graphIndex;
+        // Where the state of the seek bar is kept, so that it can be read
+        // without going through the view
+        private final ProgressStore store;
+        private final int slot;
+        private int id = -1;
+
+        // Scratch space for solvers walking the graph. solverStamp tells a
+        // solver whether the other fields were written during its current walk
+        int solverStamp;
+        int solverDegree;
+        int solverDepth;
+        boolean solverWall;
+        SeekBarGroup solverGroup;
 
         /**
          * Creates a node corresponding to the given {@link DependentSeekBar}
          * @param seekBar
          */
         public Node(DependentSeekBar seekBar) {
+            this(seekBar.getStore(), seekBar.getSlot());
             this.seekBar = seekBar;
-            children = new ArrayList<Node>();
-            parents = new ArrayList<Node>();
         }
 
-        private boolean sameSeekBar(DependentSeekBar other) {
-            if (DEBUG)
-                Log.d("DependencyGraph",
-                        "sameSeekBar: " + seekBar.getProgress()
-                    + " " + other.getProgress());
-            return seekBar.equals(other);
+        /**
+         * Creates a node without a {@link DependentSeekBar}, which keeps its
+         * state in slot of store.
+         * @param store
+         * @param slot
+         */
+        Node(ProgressStore store, int slot) {
+            this.store = store;
+            this.slot = slot;
+            children = new ArrayList<Node>();
+            parents = new ArrayList<Node>();
+            componentParent = this;
+            componentMembers = new ArrayList<Node>(1);
+            componentMembers.add(this);
+            equalParent = this;
+            equalMembers = new ArrayList<Node>(1);
+            equalMembers.add(this);
         }
 
         /*
@@ -368,17 +1116,632 @@ public class DependencyGraph {
          * @return the current progress of the {@link DependentSeekBar}
          */
         public int getProgress() {
-            return seekBar.getProgress();
+            return store.usingTemp[slot] ? store.tempProgress[slot]
+                    : store.progress[slot];
+        }
+
+        /**
+         * @return the maximum progress of the {@link DependentSeekBar}
+         */
+        int getMax() {
+            return store.max[slot];
+        }
+
+        /**
+         * @return true iff the {@link DependentSeekBar} is pinned
+         */
+        boolean isPinned() {
+            return store.pinned[slot];
+        }
+
+        /**
+         * @return true iff the {@link DependentSeekBar} has a preferred
+         *         progress
+         */
+        boolean inShiftEvent() {
+            return store.inShiftEvent[slot];
+        }
+
+        ProgressStore getStore() {
+            return store;
+        }
+
+        int getSlot() {
+            return slot;
+        }
+
+        /**
+         * @return the id of the node in its {@link DependentSeekBarManager},
+         *         or -1
+         * @see DependentSeekBar#getSeekBarId()
+         */
+        int getId() {
+            return id;
+        }
+
+        void setId(int id) {
+            this.id = id;
+        }
+
+        /**
+         * @return the manager which solves the moves of the node, or null if
+         *         the graph is used on its own
+         */
+        DependentSeekBarManager getManager() {
+            return manager;
+        }
+
+        /**
+         * Get the distance from the progress of the node to the upper end of
+         * the range it covers. Greater nodes are compared against the upper
+         * end.
+         * @return the extent of the {@link DependentRangeSeekBar}, or 0 for
+         *         other seek bars
+         */
+        public int getExtent() {
+            return store.extent[slot];
         }
 
         /**
          * Get the {@link DependentSeekBar} corresponding to the node
-         * @return
+         * @return the DependentSeekBar, or null if no view is bound to the
+         *         node
          */
         public DependentSeekBar getSeekBar() {
             return seekBar;
         }
 
+        /**
+         * @return the last progress which the dependency logic has accepted
+         *         for this node, ignoring any temporary progress
+         */
+        int getOldProgress() {
+            return store.progress[slot];
+        }
+
+        int getPreferredProgress() {
+            return store.preferredProgress[slot];
+        }
+
+        /**
+         * Sets the progress of the node on behalf of a solver. Only the model
+         * is changed, the view is updated once when the manager's outermost
+         * update ends.
+         *
+         * @see DependentSeekBarManager#beginUpdate()
+         */
+        void writeProgress(int progress) {
+            if (manager == null) {
+                store.progress[slot] = progress;
+                if (seekBar != null) {
+                    seekBar.setProgressWithoutUpdate(progress);
+                }
+                return;
+            }
+            final boolean changed = progress != store.progress[slot];
+            // A write which changes nothing only has to put back the thumb of
+            // a view which was dragged elsewhere
+            if (!changed && seekBar == null) {
+                return;
+            }
+            manager.beginUpdate();
+            if (!store.dirty[slot]) {
+                store.dirty[slot] = true;
+                store.progressBeforeUpdate[slot] = store.progress[slot];
+                manager.markDirty(this);
+            }
+            if (changed) {
+                store.progress[slot] = progress;
+                // Cached bounds of every node in the component depend on
+                // this node's progress
+                manager.touchComponent(this);
+                SeekBarGroup.touch(this);
+            }
+            manager.endUpdate();
+        }
+
+        /**
+         * @return the progress the node had before the update it was last
+         *         written in
+         */
+        int getProgressBeforeUpdate() {
+            return store.progressBeforeUpdate[slot];
+        }
+
+        /**
+         * Ends the update the node was written in, moving its view to the
+         * progress written during the update.
+         */
+        void flushProgress() {
+            store.dirty[slot] = false;
+            if (seekBar != null) {
+                seekBar.flushProgress();
+            }
+        }
+
+        // When only a check is performed, this function will make
+        // getProgress() return the temporary progress
+        void useTempProgress() {
+            if (!store.usingTemp[slot]) {
+                store.tempProgress[slot] = store.progress[slot];
+                store.usingTemp[slot] = true;
+            }
+        }
+
+        boolean usingTempProgress() {
+            return store.usingTemp[slot];
+        }
+
+        /**
+         * Drops the temporary progress of this node and of every node a dry
+         * run may have reached from it.
+         *
+         * @param updateBeforeClearing true iff the temporary progress should
+         *        be written as the progress first
+         */
+        void clearTempProgress(boolean updateBeforeClearing) {
+            if (updateBeforeClearing) {
+                writeProgress(store.tempProgress[slot]);
+            }
+            store.usingTemp[slot] = false;
+            SeekBarGroup.touch(this);
+
+            for (Node child : children) {
+                clearTempProgress(child, updateBeforeClearing);
+            }
+            for (Node parent : parents) {
+                clearTempProgress(parent, updateBeforeClearing);
+            }
+            for (Node member : getEqualityGroup()) {
+                clearTempProgress(member, updateBeforeClearing);
+            }
+            if (sumConstraint != null) {
+                for (Node member : sumConstraint.getMembers()) {
+                    clearTempProgress(member, updateBeforeClearing);
+                }
+            }
+            clearTempProgress(laneNext, updateBeforeClearing);
+            clearTempProgress(lanePrevious, updateBeforeClearing);
+            for (SeekBarGroup group = this.group; group != null; group = group
+                    .getParent()) {
+                if (group.movedTemporarily) {
+                    group.movedTemporarily = false;
+                    for (Node member : group.getMembers()) {
+                        clearTempProgress(member, updateBeforeClearing);
+                    }
+                }
+            }
+        }
+
+        private void clearTempProgress(Node node, boolean updateBeforeClearing) {
+            if (node != null && node.usingTempProgress()) {
+                node.clearTempProgress(updateBeforeClearing);
+            }
+        }
+
+        /**
+         * Records the current progress as the preferred progress and tells
+         * the manager's {@link ConstraintSolver} that a shift event starts.
+         *
+         * @see DependentSeekBar#startShiftEvent()
+         */
+        void startShiftEvent() {
+            if (!store.inShiftEvent[slot]) {
+                joinShiftEvent();
+                if (manager != null) {
+                    manager.getConstraintSolver().startShiftEvent(this);
+                }
+            }
+        }
+
+        /**
+         * Records the current progress as the preferred progress. Used by
+         * solvers for nodes that are shifted during another node's shift
+         * event.
+         */
+        void joinShiftEvent() {
+            if (!store.inShiftEvent[slot]) {
+                store.inShiftEvent[slot] = true;
+                store.preferredProgress[slot] = getProgress();
+            }
+        }
+
+        /**
+         * Makes this node and all nodes which it has relationships with
+         * forget their preferred progress.
+         *
+         * @see DependentSeekBar#endShiftEvent()
+         */
+        void endShiftEvent() {
+            if (manager != null) {
+                manager.getConstraintSolver().endShiftEvent(this);
+            }
+            leaveShiftEvent();
+        }
+
+        private void leaveShiftEvent() {
+            store.inShiftEvent[slot] = false;
+            for (Node node : children) {
+                leaveShiftEvent(node);
+            }
+            for (Node node : parents) {
+                leaveShiftEvent(node);
+            }
+            for (Node node : getEqualityGroup()) {
+                leaveShiftEvent(node);
+            }
+            if (sumConstraint != null) {
+                for (Node node : sumConstraint.getMembers()) {
+                    leaveShiftEvent(node);
+                }
+            }
+            leaveShiftEvent(laneNext);
+            leaveShiftEvent(lanePrevious);
+            for (SeekBarGroup group = this.group; group != null; group = group
+                    .getParent()) {
+                if (group.joinedShiftEvent) {
+                    group.joinedShiftEvent = false;
+                    for (Node node : group.getMembers()) {
+                        leaveShiftEvent(node);
+                    }
+                }
+            }
+        }
+
+        private void leaveShiftEvent(Node node) {
+            if (node != null && node.inShiftEvent()) {
+                node.leaveShiftEvent();
+            }
+        }
+
+        /**
+         * Moves the node straight to progress without consulting the
+         * {@link ConstraintSolver}. Used by solvers which have already made
+         * sure that progress does not break any dependencies.
+         *
+         * @param progress the progress to move to
+         * @param checkOnly true iff only the temporary progress should be
+         *        updated
+         */
+        void applyProgress(int progress, boolean checkOnly) {
+            if (checkOnly) {
+                useTempProgress();
+                store.tempProgress[slot] = progress;
+                SeekBarGroup.touch(this);
+            } else {
+                writeProgress(progress);
+            }
+        }
+
+        /**
+         * Asks the manager's {@link ConstraintSolver} how far the node can
+         * move by displacement, and moves it that far. Only the temporary
+         * progress is updated when checkOnly is true.
+         *
+         * @param displacement the distance the node is being requested to
+         *        move right
+         * @return the distance the node can move, with the same sign as
+         *         displacement, or 0
+         */
+        int canMove(int displacement, boolean checkOnly) {
+            int movementAllowed = manager.getConstraintSolver().canMove(this,
+                    displacement, store.progress[slot], checkOnly);
+            if (checkOnly) {
+                store.tempProgress[slot] += movementAllowed;
+                SeekBarGroup.touch(this);
+            } else if (movementAllowed != 0) {
+                writeProgress(store.progress[slot] + movementAllowed);
+            }
+            return movementAllowed;
+        }
+
+        /**
+         * Turn off shifting so that the nodes do not displace other nodes
+         * which are already in their preferred positions and change it back
+         * to the previous shifting state after finishing.
+         *
+         * @param direction the displacement of the node
+         */
+        void startPreferredProgressCheck(DependentSeekBar.Direction direction) {
+            boolean shiftingAllowed = manager.isShiftingAllowed();
+            manager.setShiftingAllowed(false);
+            manager.getConstraintSolver().checkPreferredProgress(this,
+                    direction);
+            manager.setShiftingAllowed(shiftingAllowed);
+        }
+
+        /**
+         * Moves the node to newProgress if it can get there with its
+         * dependencies, and doesn't move anything otherwise.
+         *
+         * @param newProgress the desired progress
+         * @return true iff the node was able to move to newProgress
+         * @see DependentSeekBar#moveTo(int)
+         */
+        boolean moveTo(int newProgress) {
+            boolean result = false;
+            int curProgress = getProgress();
+            int displacement = newProgress - curProgress;
+            manager.getSolveBudget().startUnbounded();
+            manager.beginUpdate();
+            if (displacement == 0
+                    || manager.getConstraintSolver().canMove(this,
+                            displacement, curProgress, true) == displacement) {
+                store.tempProgress[slot] = newProgress;
+                result = true;
+            }
+            /* Clear the temp progress of all sliders */
+            clearTempProgress(result);
+
+            /* Update preferred progress so that this node does not attempt
+            to move anywhere else. */
+            store.preferredProgress[slot] = store.progress[slot];
+            if (result) {
+                startPreferredProgressCheck(displacement > 0 ?
+                        DependentSeekBar.Direction.RIGHT :
+                        DependentSeekBar.Direction.LEFT);
+            }
+            manager.endUpdate();
+            return result;
+        }
+
+        /*
+         * Asks the solver how far the node can move by displacement. A node
+         * with a view leaves it to the view, which a DependentRangeSeekBar
+         * overrides to move only its lower end.
+         */
+        private int solveMove(int displacement) {
+            if (seekBar != null) {
+                return seekBar.solveMove(displacement);
+            }
+            return manager.getConstraintSolver().canMove(this, displacement,
+                    store.progress[slot], false);
+        }
+
+        /**
+         * Solves a drag of the node to progress within the manager's solve
+         * budget. This is how a {@link DependentSeekBar} solves a drag of its
+         * thumb, so a node moved without touching its view ends up in the
+         * same place.
+         *
+         * @param progress the progress the node was dragged to
+         * @return true iff the budget ran out after the node had moved, but
+         *         before it reached progress, so the drag should be solved
+         *         again later
+         */
+        boolean drag(int progress) {
+            final int oldProgress = store.progress[slot];
+            final int distance = progress - oldProgress;
+            if (distance == 0) {
+                return false;
+            }
+            final SolveBudget budget = manager.getSolveBudget();
+            budget.start();
+            manager.beginUpdate();
+            final int allowedMovement = solveMove(distance);
+            if ((distance < 0 && allowedMovement < 0)
+                    || (distance > 0 && allowedMovement > 0)) {
+                // The node is moved first so that the others see where it
+                // has moved to when they return to their preferred progress.
+                // Its own preferred progress is where it is now
+                writeProgress(oldProgress + allowedMovement);
+                store.preferredProgress[slot] = store.progress[slot];
+                startPreferredProgressCheck(allowedMovement > 0 ?
+                        DependentSeekBar.Direction.RIGHT :
+                        DependentSeekBar.Direction.LEFT);
+            } else {
+                // Moves the thumb of the view back to where it was
+                writeProgress(oldProgress);
+            }
+            // Read before the listeners run, as their queries reset the
+            // budget
+            final boolean exhausted = budget.isExhausted();
+            manager.endUpdate();
+            return exhausted && allowedMovement != 0
+                    && store.progress[slot] != progress;
+        }
+
+        /**
+         * Get the lowest progress the node can be moved to given its
+         * dependencies, from bounds cached in the manager's store.
+         * @return the lowest reachable progress
+         * @see DependentSeekBar#getRestrictedMin()
+         */
+        int getLowerBound() {
+            updateBounds();
+            return store.lowerBound[slot];
+        }
+
+        /**
+         * Get the highest progress the node can be moved to given its
+         * dependencies, from bounds cached in the manager's store.
+         * @return the highest reachable progress
+         * @see DependentSeekBar#getRestrictedMax()
+         */
+        int getUpperBound() {
+            updateBounds();
+            return store.upperBound[slot];
+        }
+
+        /**
+         * @return true iff the cached bounds of the node are still valid, so
+         *         getting them does not solve anything
+         */
+        boolean hasCurrentBounds() {
+            return manager == null
+                    || (store.boundsValid[slot]
+                            && store.boundsModelVersion[slot] == manager
+                                    .getModelVersion()
+                            && store.boundsShifting[slot] == manager
+                                    .isShiftingAllowed()
+                            && (store.boundsFixed[slot] || store
+                                    .boundsComponentStamp[slot] == manager
+                                    .getComponentStamp(this)));
+        }
+
+        /*
+         * Recomputes the bounds with two dry runs of the solver, unless
+         * nothing they depend on has changed since they were last computed.
+         */
+        private void updateBounds() {
+            if (manager == null) {
+                store.lowerBound[slot] = 0;
+                store.upperBound[slot] = getMax();
+                return;
+            }
+            if (hasCurrentBounds()) {
+                return;
+            }
+            final int progress = store.progress[slot];
+            manager.getSolveBudget().startUnbounded();
+            store.upperBound[slot] = progress
+                    + canMove(getMax() - progress, true);
+            clearTempProgress(false);
+            manager.getSolveBudget().startUnbounded();
+            store.lowerBound[slot] = progress + canMove(-progress, true);
+            clearTempProgress(false);
+
+            store.boundsModelVersion[slot] = manager.getModelVersion();
+            store.boundsComponentStamp[slot] = manager.getComponentStamp(this);
+            store.boundsShifting[slot] = manager.isShiftingAllowed();
+            store.boundsFixed[slot] = manager.isShiftingAllowed()
+                    && hasFixedBounds();
+            store.boundsValid[slot] = true;
+        }
+
+        /*
+         * When shifting, every bar in the way is pushed as far as it can go,
+         * so the bounds only depend on the dependencies, the maximums and the
+         * pinned bars, which all change the model version. Sum constraints
+         * and groups move by how far their members are from each other,
+         * which changes with their progress.
+         */
+        private boolean hasFixedBounds() {
+            for (Node node : manager.getComponent(this)) {
+                if (node.getSumConstraint() != null
+                        || node.getGroup() != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Get the representative of this node's equality group. Nodes without
+         * Equal dependencies are their own representative.
+         * @return The root of the equality group containing this node
+         */
+        public Node getEqualityRoot() {
+            return findEqualRoot(this);
+        }
+
+        /**
+         * Get the fixed offset between this node and the root of its
+         * equality group.
+         * @return progress of this node - progress of the root
+         */
+        public int getEqualityOffset() {
+            findEqualRoot(this);
+            return equalParent == this ? 0 : equalOffset;
+        }
+
+        /**
+         * Get the nodes which are tied to this one by Equal dependencies.
+         * @return List of the members of this node's equality group,
+         *         including this node
+         */
+        public ArrayList<Node> getEqualityGroup() {
+            return findEqualRoot(this).equalMembers;
+        }
+
+        /**
+         * @return The {@link SumConstraint} this node belongs to, or null
+         */
+        SumConstraint getSumConstraint() {
+            return sumConstraint;
+        }
+
+        /**
+         * @return The task after this one in its {@link Lane}, or null
+         */
+        Node getLaneNext() {
+            return laneNext;
+        }
+
+        /**
+         * @return The task before this one in its {@link Lane}, or null
+         */
+        Node getLanePrevious() {
+            return lanePrevious;
+        }
+
+        /**
+         * @return The duration of this task, or 0 if the node is not in a
+         *         {@link Lane}
+         */
+        int getLaneDuration() {
+            return laneDuration;
+        }
+
+        /**
+         * @return The innermost {@link SeekBarGroup} this node belongs to, or
+         *         null
+         */
+        SeekBarGroup getGroup() {
+            return group;
+        }
+
+        /**
+         * Adds the dependencies of this node in one direction to edges, along
+         * with the gap each of them requires, leaving out the nodes inside
+         * skip.
+         * @param towardsChildren true for the greater nodes, false for the
+         *        smaller ones
+         * @param skip a group whose nodes are left out, or null
+         * @param edges the list to add the dependencies to
+         */
+        void collectEdges(boolean towardsChildren, SeekBarGroup skip,
+                EdgeList edges) {
+            if (towardsChildren) {
+                // Greater nodes are compared against the upper end of a
+                // DependentRangeSeekBar
+                for (Node child : children) {
+                    if (skip == null || !skip.contains(child)) {
+                        edges.add(this, child, 1 + getExtent());
+                    }
+                }
+                if (laneNext != null
+                        && (skip == null || !skip.contains(laneNext))) {
+                    edges.add(this, laneNext, laneDuration);
+                }
+            } else {
+                for (Node parent : parents) {
+                    if (skip == null || !skip.contains(parent)) {
+                        edges.add(this, parent, 1 + parent.getExtent());
+                    }
+                }
+                if (lanePrevious != null
+                        && (skip == null || !skip.contains(lanePrevious))) {
+                    edges.add(this, lanePrevious, lanePrevious.laneDuration);
+                }
+            }
+        }
+
+        /*
+         * The nodes which have to move when this one is pushed right: its
+         * children, the next task in its lane, and the rest of its equality
+         * group.
+         */
+        private ArrayList<Node> getSuccessors() {
+            ArrayList<Node> successors = new ArrayList<Node>(children);
+            if (laneNext != null) {
+                successors.add(laneNext);
+            }
+            successors.addAll(getEqualityGroup());
+            return successors;
+        }
+
+
         private void addChild(Node node) {
             children.add(node);
         }
@@ -395,14 +1758,6 @@ public class DependencyGraph {
             parents.remove(node);
         }
 
-        private boolean isVisited() {
-            return visited;
-        }
-
-        private void setVisited(boolean v) {
-            visited = v;
-        }
-
         /**
          * Get the children of this Node
          * @return List of child nodes
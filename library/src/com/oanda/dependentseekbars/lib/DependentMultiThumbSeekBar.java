@@ -0,0 +1,106 @@
+package com.oanda.dependentseekbars.lib;
+
+import android.content.Context;
+import android.util.AttributeSet;
+
+/**
+ * A single track with several thumbs, each one a seek bar in a
+ * {@link DependentSeekBarManager}. The thumbs are kept in order from left to
+ * right by LESS_THAN dependencies, so dragging a thumb into its neighbour
+ * shifts the neighbour along, like any other dependent seek bars.
+ *
+ * Because the thumbs are ordinary seek bars in the manager, they can have
+ * dependencies with seek bars on other tracks as well, added with
+ * {@link DependentSeekBarManager#addDependenciesById(int, DependentSeekBar.Dependency, int...)}
+ * and the id of a thumb from {@link #getThumbId(int)}.
+ */
+public class DependentMultiThumbSeekBar extends DependentSeekBarsView {
+    private int[] mThumbIds = new int[0];
+
+    /**
+     * Creates a DependentMultiThumbSeekBar with its thumbs in the provided
+     * {@link DependentSeekBarManager}.
+     *
+     * @param context
+     * @param manager The {@link DependentSeekBarManager} to add the thumbs to.
+     * @param maximum the maximum value of every thumb
+     * @param progress the initial progress of each thumb from left to right
+     *
+     * @see #setThumbs(DependentSeekBarManager, int, int...)
+     */
+    public DependentMultiThumbSeekBar(Context context,
+            DependentSeekBarManager manager, int maximum, int... progress) {
+        super(context, manager);
+        setThumbs(manager, maximum, progress);
+    }
+
+    /*
+     * This contructor must be exposed separately from the constructor which
+     * takes in a {@link DependentSeekBarManager} as it is required by the
+     * android layout manager. The thumbs are added afterwards with
+     * setThumbs.
+     */
+    public DependentMultiThumbSeekBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * Adds the thumbs of this track to manager, each one depending on the
+     * thumb after it with a LESS_THAN dependency.
+     *
+     * @param manager the manager to add the thumbs to
+     * @param maximum the maximum value of every thumb
+     * @param progress the initial progress of each thumb from left to right,
+     *        in increasing order
+     * @throws IllegalStateException if this track already has thumbs
+     * @throws IllegalArgumentException if progress is not in increasing order
+     *         or out of range
+     */
+    public void setThumbs(DependentSeekBarManager manager, int maximum,
+            int... progress) {
+        if (mThumbIds.length > 0)
+            throw new IllegalStateException("The thumbs are already set");
+        for (int i = 0; i < progress.length; i++) {
+            if (progress[i] < 0 || progress[i] > maximum)
+                throw new IllegalArgumentException("Progress " + progress[i]
+                        + " is out of range");
+            if (i > 0 && progress[i] <= progress[i - 1])
+                throw new IllegalArgumentException(
+                        "Progress must be in increasing order");
+        }
+        final int[] ids = new int[progress.length];
+        for (int i = 0; i < progress.length; i++) {
+            ids[i] = manager.addVirtualSeekBar(progress[i], maximum);
+            if (i > 0) {
+                manager.addDependenciesById(ids[i - 1],
+                        DependentSeekBar.Dependency.LESS_THAN, ids[i]);
+            }
+        }
+        mThumbIds = ids;
+        setManager(manager);
+        setRows(ids);
+    }
+
+    /**
+     * @return the number of thumbs on the track
+     */
+    public int getThumbCount() {
+        return mThumbIds.length;
+    }
+
+    /**
+     * @param index the index of the thumb from left to right
+     * @return the id in the manager of the thumb
+     */
+    public int getThumbId(int index) {
+        return mThumbIds[index];
+    }
+
+    /**
+     * @param index the index of the thumb from left to right
+     * @return the progress of the thumb
+     */
+    public int getThumbProgress(int index) {
+        return getManager().getProgressById(mThumbIds[index]);
+    }
+}
@@ -0,0 +1,256 @@
+package com.oanda.dependentseekbars.lib;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+/**
+ * {@link DependentSeekBar} with a second thumb, covering the range between a
+ * lower and an upper progress on one track, such as the start and the end of
+ * a task. The progress of the seek bar is the lower end of the range.
+ *
+ * The range is a single node in the {@link DependencyGraph}. DependentSeekBars
+ * which are less than the range are compared against its lower end, and
+ * DependentSeekBars which are greater against its upper end. Dragging the
+ * lower thumb pushes the smaller DependentSeekBars out of the way and
+ * dragging the upper thumb the greater ones, while the other end stays put.
+ * When the range itself is pushed, it moves as a whole. The lower end always
+ * stays below the upper end, without an edge in the graph.
+ *
+ * A range can't be tied to other seek bars with Equal dependencies, be part of
+ * a {@link SumConstraint} or be a task in a {@link Lane}.
+ */
+public class DependentRangeSeekBar extends DependentSeekBar {
+    private Drawable mThumb;
+    private Drawable mUpperThumb;
+    private boolean mDraggingUpper = false;
+    private OnRangeChangeListener mRangeListener;
+
+    /**
+     * Listener which is notified when either end of the range changes.
+     */
+    public interface OnRangeChangeListener {
+        void onRangeChanged(DependentRangeSeekBar seekBar, int lower,
+                int upper, boolean fromUser);
+    }
+
+    /**
+     * Creates a DependentRangeSeekBar for the provided
+     * {@link DependentSeekBarManager}.
+     *
+     * @param context
+     * @param manager The {@link DependentSeekBarManager} that this
+     *        DependentRangeSeekBar will be added to.
+     * @param lower The progress value to initialize the lower end to.
+     * @param upper The progress value to initialize the upper end to, which
+     *        must be greater than lower.
+     * @param maximum The maximum progress value to set on the
+     *        DependentRangeSeekBar.
+     */
+    public DependentRangeSeekBar(Context context,
+            DependentSeekBarManager manager, int lower, int upper, int maximum) {
+        super(context, manager, lower, maximum);
+        if (upper <= lower || upper > maximum) {
+            throw new IllegalArgumentException(
+                    "upper must be greater than lower and at most maximum");
+        }
+        setExtentValue(upper - lower);
+    }
+
+    /*
+     * This contructor must be exposed separately from the constructors which take in a {@link DependentSeekBarManager}
+     * as it is required by the android layout manager.
+     */
+    public DependentRangeSeekBar(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setExtentValue(1);
+    }
+
+    /*
+     * This contructor must be exposed separately from the constructors which take in a {@link DependentSeekBarManager}
+     * as it is required by the android layout manager.
+     */
+    public DependentRangeSeekBar(Context context, AttributeSet attrs,
+            int defStyle) {
+        super(context, attrs, defStyle);
+        setExtentValue(1);
+    }
+
+    public void setOnRangeChangeListener(OnRangeChangeListener listener) {
+        mRangeListener = listener;
+    }
+
+    /**
+     * @return the lower end of the range, which is the same as
+     *         {@link #getProgress()}
+     */
+    public int getLowerProgress() {
+        return getProgress();
+    }
+
+    /**
+     * @return the upper end of the range
+     */
+    public int getUpperProgress() {
+        return getProgress() + getExtent();
+    }
+
+    /**
+     * Moves the upper end of the range, shifting greater DependentSeekBars out
+     * of the way where allowed. The upper end can't move below the lower end.
+     *
+     * @param upper the requested progress of the upper end
+     */
+    public void setUpperProgress(int upper) {
+        moveUpper(upper, false);
+    }
+
+    /*
+     * The range is pushed as a whole by the solver, so moving only the lower
+     * end means letting the solver move the range and then moving the upper
+     * end back. Moving right can't push anything, so the solver is skipped.
+     */
+    @Override
+    int solveMove(int displacement) {
+        int allowed;
+        if (displacement > 0) {
+            allowed = Math.max(0, Math.min(displacement, getExtent() - 1));
+        } else {
+            allowed = super.solveMove(displacement);
+        }
+        setExtent(getExtent() - allowed, true);
+        return allowed;
+    }
+
+    private void moveUpper(int upper, boolean fromUser) {
+        final DependentSeekBarManager manager = getManager();
+        final int lower = getProgress();
+        upper = Math.max(lower + 1, Math.min(getMax(), upper));
+        int displacement = upper - (lower + getExtent());
+        if (displacement > 0 && manager != null && getNode() != null) {
+            // Moving the range right pushes exactly the DependentSeekBars
+            // which moving the upper end does. The lower end is then left
+            // where it was
+            final SolveBudget budget = manager.getSolveBudget();
+            budget.startUnbounded();
+            manager.beginUpdate();
+            displacement = manager.getConstraintSolver().canMove(getNode(),
+                    displacement, getOldProgress(), false);
+            manager.endUpdate();
+        }
+        if (displacement != 0) {
+            setExtent(getExtent() + displacement, fromUser);
+        }
+    }
+
+    private void setExtent(int extent, boolean fromUser) {
+        if (extent == getExtent()) {
+            return;
+        }
+        setExtentValue(extent);
+        final DependentSeekBarManager manager = getManager();
+        if (manager != null && getNode() != null) {
+            // The gap to the greater DependentSeekBars has changed
+            manager.invalidateModel();
+            manager.touchComponent(getNode());
+        }
+        invalidate();
+        if (mRangeListener != null) {
+            mRangeListener.onRangeChanged(this, getProgress(),
+                    getUpperProgress(), fromUser);
+        }
+    }
+
+    @Override
+    public void setThumb(Drawable thumb) {
+        super.setThumb(thumb);
+        // Called from the SeekBar constructor, so the fields may not be
+        // initialized yet
+        mThumb = thumb;
+        mUpperThumb = null;
+    }
+
+    @Override
+    protected synchronized void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mUpperThumb == null && mThumb != null) {
+            Drawable.ConstantState state = mThumb.getConstantState();
+            mUpperThumb = state != null ? state.newDrawable(getResources())
+                    .mutate() : mThumb;
+        }
+        if (mUpperThumb == null || getMax() <= 0) {
+            return;
+        }
+        final int available = getWidth() - getPaddingLeft()
+                - getPaddingRight();
+        final int width = mUpperThumb.getIntrinsicWidth();
+        final int height = mUpperThumb.getIntrinsicHeight();
+        final int left = getPaddingLeft() + thumbPosition(available)
+                - width / 2;
+        final int top = (getHeight() - height) / 2;
+        mUpperThumb.setBounds(left, top, left + width, top + height);
+        mUpperThumb.draw(canvas);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isEnabled()) {
+            return false;
+        }
+        final int available = getWidth() - getPaddingLeft()
+                - getPaddingRight();
+        final int x = (int) event.getX() - getPaddingLeft();
+        switch (event.getAction() & MotionEvent.ACTION_MASK) {
+        case MotionEvent.ACTION_DOWN:
+            // The upper thumb takes the touch if it is closer than the lower
+            // one, otherwise SeekBar handles it as usual
+            final int lowerPosition = available > 0 ? (int) ((long) available
+                    * getProgress() / Math.max(1, getMax())) : 0;
+            final int upperPosition = thumbPosition(available);
+            mDraggingUpper = Math.abs(x - upperPosition) < Math.abs(x
+                    - lowerPosition)
+                    || (x >= upperPosition && upperPosition == lowerPosition);
+            if (mDraggingUpper) {
+                setPressed(true);
+                if (getParent() != null) {
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                }
+                startShiftEvent();
+                moveUpper(progressAt(x, available), true);
+                return true;
+            }
+            break;
+        case MotionEvent.ACTION_MOVE:
+            if (mDraggingUpper) {
+                moveUpper(progressAt(x, available), true);
+                return true;
+            }
+            break;
+        case MotionEvent.ACTION_UP:
+        case MotionEvent.ACTION_CANCEL:
+            if (mDraggingUpper) {
+                mDraggingUpper = false;
+                setPressed(false);
+                endShiftEvent();
+                invalidate();
+                return true;
+            }
+            break;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    private int thumbPosition(int available) {
+        return available > 0 ? (int) ((long) available * getUpperProgress() / Math
+                .max(1, getMax())) : 0;
+    }
+
+    private int progressAt(int x, int available) {
+        if (available <= 0) {
+            return getUpperProgress();
+        }
+        return (int) ((long) Math.max(0, Math.min(available, x)) * getMax() / available);
+    }
+}
@@ -1,10 +1,8 @@
 package com.oanda.dependentseekbars.lib;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-
 import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
 import android.util.AttributeSet;
 import android.widget.SeekBar;
 
@@ -13,14 +11,36 @@ import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
 /** Type of {@link SeekBar} used for adding Dependencies. */
 public class DependentSeekBar extends SeekBar {
     public static final String TAG = "DependentSeekBar";
+    private static final int DEFAULT_ALLOWED_RANGE_COLOR = 0x4033b5e5;
     private DependentSeekBarManager mManager;
     private Node mNode;
-    private int mOldProgress = 0;
-    private int mTempProgress = -1;
-    private boolean mUseTempProgress = false;
+    private ProgressStore mStore;
+    private int mSlot;
     private boolean mPauseProgressChangedListener = false;
-    private int mPreferredProgress = 0;
-    private boolean mUsePreferredProgress = false;
+    private int mResumeProgress;
+    private int mPendingProgress;
+    private boolean mHasPendingProgress = false;
+    private OnSeekBarChangeListener mListener;
+    private boolean mShowAllowedRange = false;
+    private boolean mAttached = false;
+    private final Paint mAllowedRangePaint = new Paint();
+    // The allowed range as it was last refreshed, which is what is drawn
+    private int mAllowedMin;
+    private int mAllowedMax;
+    private final Runnable mRefreshAllowedRange = new Runnable() {
+        @Override
+        public void run() {
+            refreshAllowedRange();
+        }
+    };
+    private final Runnable mResumeSolve = new Runnable() {
+        @Override
+        public void run() {
+            if (mResumeProgress != mStore.progress[mSlot]) {
+                setProgress(mResumeProgress);
+            }
+        }
+    };
 
     public enum Direction {
         LEFT,
@@ -29,7 +49,8 @@ public class DependentSeekBar extends SeekBar {
 
     public enum Dependency {
         LESS_THAN,
-        GREATER_THAN;
+        GREATER_THAN,
+        EQUAL;
     }
 
     /**
@@ -49,7 +70,7 @@ public class DependentSeekBar extends SeekBar {
         setProgress(progress);
         // This must be done even though it was already done in init, because the progress was not set to the correct
         // value before init was called.
-        mOldProgress = progress;
+        mStore.progress[mSlot] = progress;
         setMax(maximum);
     }
 
@@ -86,12 +107,16 @@ public class DependentSeekBar extends SeekBar {
 
     /**
      * This method MUST be called in the constructor. This will ensure that
-     * mOldProgress is initialized to the correct value and invoke
-     * setOnSeekBarChangeListener() so that we override the current listener
-     * with our dependency logic.
+     * the seek bar has a {@link ProgressStore} initialized to the correct
+     * values and invoke setOnSeekBarChangeListener() so that we override the
+     * current listener with our dependency logic.
      */
     private void init() {
-        mOldProgress = getProgress();
+        mStore = new ProgressStore(1);
+        mSlot = 0;
+        mStore.progress[mSlot] = getProgress();
+        mStore.max[mSlot] = getMax();
+        mAllowedRangePaint.setColor(DEFAULT_ALLOWED_RANGE_COLOR);
         setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
@@ -108,18 +133,95 @@ public class DependentSeekBar extends SeekBar {
         });
     }
 
+    void setManager(DependentSeekBarManager manager) {
+        if (manager == mManager) {
+            return;
+        }
+        if (mAttached && mShowAllowedRange && mManager != null) {
+            mManager.removeRangeView(this);
+        }
+        this.mManager = manager;
+        if (mAttached && mShowAllowedRange && mManager != null) {
+            mManager.addRangeView(this);
+        }
+        if (mShowAllowedRange) {
+            scheduleAllowedRangeRefresh();
+        }
+    }
+
     /**
-     * Sets node from the dependency graph which references this
-     * DependentSeekBar.
+     * Makes the seek bar show node, from the dependency graph of its manager.
+     * The seek bar takes the progress and maximum of the node, whose state is
+     * kept in the manager's store, so the same seek bar can show different
+     * nodes over time.
      *
-     * @param n the node from the dependency graph
+     * @param node the node to show, or null to give the seek bar a store of
+     *        its own again, holding the state it has now
+     * @see DependentSeekBarManager#bindSeekBar(DependentSeekBar, int)
      */
-    void setNode(Node n) {
-        mNode = n;
+    void bindNode(Node node) {
+        removeCallbacks(mResumeSolve);
+        mHasPendingProgress = false;
+        if (node == null) {
+            final ProgressStore store = new ProgressStore(1);
+            store.copy(0, mStore, mSlot);
+            mStore = store;
+            mSlot = 0;
+            mNode = null;
+            return;
+        }
+        mNode = node;
+        mStore = node.getStore();
+        mSlot = node.getSlot();
+        mPauseProgressChangedListener = true;
+        super.setMax(mStore.max[mSlot]);
+        setProgress(mStore.progress[mSlot]);
+        mPauseProgressChangedListener = false;
+        invalidate();
+        if (mShowAllowedRange) {
+            scheduleAllowedRangeRefresh();
+        }
     }
 
-    void setManager(DependentSeekBarManager manager) {
-        this.mManager = manager;
+    ProgressStore getStore() {
+        return mStore;
+    }
+
+    int getSlot() {
+        return mSlot;
+    }
+
+    Node getNode() {
+        return mNode;
+    }
+
+    /**
+     * Get the id of the seek bar in its {@link DependentSeekBarManager}. The
+     * id doesn't change while the seek bar is in the manager, even when other
+     * seek bars are removed.
+     *
+     * @return the id, or -1 if the seek bar is not in a manager
+     *
+     * @see DependentSeekBarManager#getSeekBarById(int)
+     */
+    public int getSeekBarId() {
+        return mNode != null ? mNode.getId() : -1;
+    }
+
+    DependentSeekBarManager getManager() {
+        return mManager;
+    }
+
+    /**
+     * @return the last progress which the dependency logic has accepted for
+     *         this seek bar
+     */
+    int getOldProgress() {
+        return mStore.progress[mSlot];
+    }
+
+    int getPreferredProgress() {
+        return mStore.preferredProgress[mSlot];
     }
 
     @Override
@@ -131,10 +233,17 @@ public class DependentSeekBar extends SeekBar {
      * the dependency logic.
      */
     public void setOnSeekBarChangeListener(final OnSeekBarChangeListener l) {
+        mListener = l;
         super.setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
 
             @Override
             public void onStopTrackingTouch(SeekBar seekBar) {
+                // The last position of the drag is solved before the shift
+                // event ends
+                applyPendingProgress();
+                if (mManager != null && mManager.isAsyncSolving()) {
+                    mManager.getAsyncSolver().settle(DependentSeekBar.this);
+                }
                 endShiftEvent();
                 l.onStopTrackingTouch(seekBar);
             }
@@ -156,86 +265,192 @@ public class DependentSeekBar extends SeekBar {
                     boolean fromUser) {
                 // When only a progress change and UI update is desired, this
                 // will only update the progress and not execute the logic
-                // afterwards
+                // afterwards. The node has already been moved in that case
                 if (mPauseProgressChangedListener || mNode == null) {
+                    // Without a node there is no dependency logic, so the
+                    // stored progress simply follows the view
+                    if (mNode == null) {
+                        mStore.progress[mSlot] = progress;
+                    }
                     l.onProgressChanged(seekBar, progress, fromUser);
                     return;
                 }
 
-                // If the new progress isn't the same as the old one and
-                // movement is allowed in that direction,
-                int allowedMovement;
-                final int distance = progress - mOldProgress;
-                if (distance != 0) {
-                    allowedMovement = canMove(distance, mOldProgress, false);
-
-
-                    if ((distance < 0 && allowedMovement < 0) ||
-                            (distance > 0 && allowedMovement > 0)) {
-                        // The oldProgress should be this seek bar's
-                        // preferred progress
-                        mPreferredProgress = mOldProgress;
-                        startPreferredProgressCheck(allowedMovement > 0 ?
-                                                    Direction.RIGHT : Direction.LEFT);
-                        mOldProgress += allowedMovement;
-
-                        if (mOldProgress != progress) {
-                            setProgressWithoutUpdate(mOldProgress);
-                        }
-                    } else {
-                        setProgressWithoutUpdate(mOldProgress);
-                    }
+                // While frames are coalesced, a drag only records where the
+                // thumb was moved to. The thumb stays at the accepted
+                // progress until the latest position is solved on the next
+                // frame
+                if (fromUser && mManager.isFrameCoalescing()) {
+                    mPendingProgress = progress;
+                    mHasPendingProgress = true;
+                    setProgressWithoutUpdate(mStore.progress[mSlot]);
+                    mManager.getFrameScheduler().schedule(
+                            DependentSeekBar.this);
+                    return;
                 }
-                l.onProgressChanged(seekBar, mOldProgress, fromUser);
+                requestProgressChange(progress, fromUser);
             }
         });
     }
 
-    private void setProgressWithoutUpdate(int progress) {
-        mPauseProgressChangedListener = true;
-        setProgress(progress);
-        mPauseProgressChangedListener = false;
+    /*
+     * Solves a drag on the manager's worker thread when asynchronous solving
+     * is enabled and the component supports it, and on the UI thread
+     * otherwise.
+     */
+    private void requestProgressChange(int progress, boolean fromUser) {
+        if (fromUser && mManager.isAsyncSolving()
+                && mManager.getAsyncSolver().submit(this, progress)) {
+            return;
+        }
+        solveProgressChange(progress, fromUser);
     }
 
-    // Similar to super.getProgress() but returns mTempProgress if only a check
-    // is being performed
-    @Override
-    public int getProgress() {
-        return mUseTempProgress ? mTempProgress : super.getProgress();
+    /**
+     * Determines if the seekbar's progress should be changed if other
+     * seekbars must be shifted to ensure that the dependencies still hold,
+     * and shifts them.
+     *
+     * @param progress the progress the seek bar was moved to
+     * @param fromUser true iff the change was made by the user
+     */
+    void solveProgressChange(int progress, boolean fromUser) {
+        if (progress != mStore.progress[mSlot]) {
+            removeCallbacks(mResumeSolve);
+            // If the solver ran out of budget before reaching the requested
+            // progress, carry on from where it stopped on the next pass of
+            // the event loop
+            if (mNode.drag(progress)) {
+                mResumeProgress = progress;
+                post(mResumeSolve);
+            }
+        }
+        mListener.onProgressChanged(this, mStore.progress[mSlot], fromUser);
     }
 
-    // When only a check is performed, this function will set mUseTempProgress to
-    // true
-    private void useTempProgress() {
-        if (!mUseTempProgress) {
-            mTempProgress = getProgress();
-            mUseTempProgress = true;
+    /**
+     * Solves the latest position the thumb was dragged to since the last
+     * frame, if there is one. Called by the {@link FrameScheduler} once per
+     * frame.
+     */
+    void applyPendingProgress() {
+        if (!mHasPendingProgress || mManager == null || mNode == null) {
+            mHasPendingProgress = false;
+            return;
         }
+        mHasPendingProgress = false;
+        requestProgressChange(mPendingProgress, true);
     }
 
-    boolean usingTempProgress() {
-        return mUseTempProgress;
+    /**
+     * Moves the seek bar to the progress the worker thread solved its drag
+     * for, in the same update as the other seek bars in its component.
+     *
+     * @param progress the progress the seek bar can move to
+     * @see AsyncSolver
+     */
+    void finishAsyncSolve(int progress) {
+        mStore.preferredProgress[mSlot] = mStore.progress[mSlot];
+        writeProgress(progress);
+    }
+
+    /**
+     * Tells the listener of the seek bar about its current progress.
+     */
+    void dispatchProgressChanged(boolean fromUser) {
+        mListener.onProgressChanged(this, mStore.progress[mSlot], fromUser);
     }
 
-    void clearTempProgress(boolean updateBeforeClearing) {
-        if (updateBeforeClearing) {
-            mOldProgress = mTempProgress;
-            setProgressWithoutUpdate(mOldProgress);
+    @Override
+    public synchronized void setMax(int max) {
+        super.setMax(max);
+        // The store and the manager are not set yet when this is called from
+        // the SeekBar constructor
+        if (mStore == null || mStore.max[mSlot] == getMax()) {
+            return;
+        }
+        mStore.max[mSlot] = getMax();
+        if (mManager != null) {
+            mManager.invalidateModel();
+        } else if (mShowAllowedRange) {
+            refreshAllowedRange();
         }
-        mUseTempProgress = false;
+    }
 
-        for (Node child : mNode.getChildren()) {
-            final DependentSeekBar dependent = child.getSeekBar();
-            if (dependent.usingTempProgress()) {
-                dependent.clearTempProgress(updateBeforeClearing);
-            }
+    /**
+     * Asks the {@link ConstraintSolver} how far the thumb can move by
+     * displacement, moving the other seek bars out of the way. The seek bar's
+     * own progress is updated by the caller.
+     *
+     * @param displacement the distance the thumb was dragged
+     * @return the distance the thumb can move
+     */
+    int solveMove(int displacement) {
+        return mManager.getConstraintSolver().canMove(mNode, displacement,
+                mStore.progress[mSlot], false);
+    }
+
+    /**
+     * @return the distance between the progress of the seek bar and the upper
+     *         end of the range it covers, which is 0 unless it is a
+     *         {@link DependentRangeSeekBar}
+     */
+    int getExtent() {
+        return mStore.extent[mSlot];
+    }
+
+    void setExtentValue(int extent) {
+        mStore.extent[mSlot] = extent;
+    }
+
+    void setProgressWithoutUpdate(int progress) {
+        mPauseProgressChangedListener = true;
+        setProgress(progress);
+        mPauseProgressChangedListener = false;
+    }
+
+    /**
+     * Sets the progress of the seek bar on behalf of a solver. Only the model
+     * is changed, the view is updated once when the manager's outermost
+     * update ends.
+     *
+     * @see DependentSeekBarManager#beginUpdate()
+     */
+    void writeProgress(int progress) {
+        if (mNode == null) {
+            mStore.progress[mSlot] = progress;
+            setProgressWithoutUpdate(progress);
+            return;
         }
-        for (Node parent : mNode.getParents()) {
-            final DependentSeekBar dependent = parent.getSeekBar();
-            if (dependent.usingTempProgress()) {
-                dependent.clearTempProgress(updateBeforeClearing);
-            }
+        mNode.writeProgress(progress);
+    }
+
+    /**
+     * Moves the view to the progress written while the manager was collecting
+     * updates.
+     *
+     * @see Node#flushProgress()
+     */
+    void flushProgress() {
+        if (super.getProgress() != mStore.progress[mSlot]) {
+            setProgressWithoutUpdate(mStore.progress[mSlot]);
+        }
+    }
+
+    // Similar to super.getProgress() but returns the temporary progress if
+    // only a check is being performed, and the progress written by the solver
+    // if the view has not been updated yet
+    @Override
+    public int getProgress() {
+        // Called from the SeekBar constructor before the store is set
+        if (mStore == null) {
+            return super.getProgress();
+        }
+        if (mStore.usingTemp[mSlot]) {
+            return mStore.tempProgress[mSlot];
         }
+        return mStore.dirty[mSlot] ? mStore.progress[mSlot] : super
+                .getProgress();
     }
 
     /**
@@ -248,9 +463,11 @@ public class DependentSeekBar extends SeekBar {
      * is called.
      */
     public void startShiftEvent() {
-        if (!mUsePreferredProgress) {
-            mUsePreferredProgress = true;
-            mPreferredProgress = getProgress();
+        if (mNode != null) {
+            mNode.startShiftEvent();
+        } else if (!mStore.inShiftEvent[mSlot]) {
+            mStore.inShiftEvent[mSlot] = true;
+            mStore.preferredProgress[mSlot] = getProgress();
         }
     }
 
@@ -258,7 +475,7 @@ public class DependentSeekBar extends SeekBar {
      * @return true iff the seek bar currently has a preferred progress
      */
     public boolean inShiftEvent() {
-        return mUsePreferredProgress;
+        return mStore.inShiftEvent[mSlot];
     }
 
     /**
@@ -270,80 +487,36 @@ public class DependentSeekBar extends SeekBar {
      * is called.
      */
     public void endShiftEvent() {
-        mUsePreferredProgress = false;
-        for (Node node : mNode.getChildren()) {
-            DependentSeekBar dependent = node.getSeekBar();
-            if (dependent.inShiftEvent()) {
-                dependent.endShiftEvent();
-            }
-        }
-        for (Node node : mNode.getParents()) {
-            DependentSeekBar dependent = node.getSeekBar();
-            if (dependent.inShiftEvent()) {
-                dependent.endShiftEvent();
-            }
+        if (mNode != null) {
+            mNode.endShiftEvent();
+        } else {
+            mStore.inShiftEvent[mSlot] = false;
         }
     }
 
     /**
-     * Turn off shifting so that the seek bars do not displace other seek bars
-     * which are already in their preferred positions and change it back to
-     * the previous shifting state after finishing.
+     * Pins the seek bar in place. A pinned seek bar is never moved by the
+     * {@link DependentSeekBarManager}: other seek bars cannot shift it out of
+     * their way and changes to its own progress are rejected until it is
+     * unpinned again. Seek bars on the far side of a pinned seek bar are never
+     * visited when shifting, so pinning also keeps shifting cheap.
      *
-     * @param direction the displacement of the seek bar
+     * @param pinned true to lock the seek bar at its current progress
      */
-    void startPreferredProgressCheck(final Direction direction) {
-        boolean shiftingAllowed = mManager.isShiftingAllowed();
-        mManager.setShiftingAllowed(false);
-        checkPreferredProgress(direction);
-        mManager.setShiftingAllowed(shiftingAllowed);
+    public void setPinned(boolean pinned) {
+        mStore.pinned[mSlot] = pinned;
+        if (mManager != null) {
+            mManager.invalidateModel();
+        }
     }
 
     /**
-     * Attempt to move to the preferred progress value if possible and then
-     * tell all seek bars which depend on this seek bar to check if they can
-     * move to their preferred progress values.
-     *
-     * This method should NEVER be called when manager.isShiftingAllowed() ==
-     * true, as it may end up moving bars which are already in their preferred
-     * locations.
+     * @return true iff the seek bar is pinned in place
      *
-     * @param direction the direction of the initially moved seek bar
+     * @see #setPinned(boolean)
      */
-    void checkPreferredProgress(final Direction direction) {
-        /*This method should NEVER be called when manager.isShiftingAllowed() is
-        true, as it may end up moving bars which are already in their preferred
-        locations. */
-        assert(mManager.isShiftingAllowed() == false);
-
-        if (mUsePreferredProgress && mPreferredProgress != mOldProgress) {
-            canMove(mPreferredProgress - mOldProgress, false);
-        }
-
-        /* Sort the affected nodes so that they are in ascending order if
-        parents and descending order if children. Since we do not allow
-        shifting when attempting to move to the preferred progress,
-        if we are allowing bars to move left and we try to move the bar with
-        the largest progress value first, it will not be allowed to move and
-        we will never ask it to move again, resulting in it never moving.
-        Instead, we can make sure that we move the bars with the smallest
-        progress to the left first so that they are out of the way when the
-        bars with larger progress try and move left. (Vice-versa for right) */
-        ArrayList<Node> affectedNodes =
-                direction == Direction.RIGHT ? mNode.getParents() :
-                mNode.getChildren();
-        Comparator<Node> comparator = new Comparator<Node>() {
-            @Override
-            public int compare(Node lhs, Node rhs) {
-                int result = Integer
-                        .signum(lhs.getProgress() - rhs.getProgress());
-                return direction == Direction.RIGHT ? result * -1 : result;
-            }
-        };
-        Collections.sort(affectedNodes, comparator);
-        for (Node node : affectedNodes) {
-            node.getSeekBar().checkPreferredProgress(direction);
-        }
+    public boolean isPinned() {
+        return mStore.pinned[mSlot];
     }
 
     /**
@@ -356,135 +529,11 @@ public class DependentSeekBar extends SeekBar {
      *         progress
      */
     public boolean moveTo(int newProgress) {
-        boolean result = false;
-        int curProgress = getProgress();
-        int displacement = newProgress - curProgress;
-        if (displacement == 0
-                || (displacement > 0 && canMove(displacement, curProgress,
-                true) == displacement)
-                || (displacement < 0 && canMove(displacement, curProgress,
-                true) == displacement)) {
-            mTempProgress = newProgress;
-            result = true;
-        }
-        /* Clear the temp progress of all sliders */
-        clearTempProgress(result);
-
-        /* Update preferred progress so that this seek bar does not attempt
-        to move anywhere else. */
-        mPreferredProgress = mOldProgress;
-        if (result) {
-            startPreferredProgressCheck(displacement > 0 ? Direction.RIGHT :
-                                        Direction.LEFT);
-        }
-        return result;
-    }
-
-    /**
-     * Determines if the slider can move the given displacement amount and if
-     * not, the furthest it can move. This function updates the progress of
-     * the seekBar iff checkOnly is false and returns the amount that it
-     * has changed by (or the amount that it is able to change by iff
-     * checkOnly is true).
-     *
-     * @param displacement the distance the seek bar is being requested to move
-     *        right
-     * @return 0 when it cannot move. An integer representing the amount it
-     *         can move otherwise. The integer will have the same sign as the
-     *         displacement provided.
-     */
-    private int canMove(int displacement, boolean checkOnly) {
-        int movementAllowed = canMove(displacement, mOldProgress, checkOnly);
-        if ((displacement < 0 && movementAllowed < 0) ||
-                (displacement > 0 && movementAllowed > 0)) {
-            if (!checkOnly) {
-                setProgressWithoutUpdate(mOldProgress + movementAllowed);
-            }
-        }
-        if (!checkOnly) {
-            mOldProgress += movementAllowed;
-        } else {
-            mTempProgress += movementAllowed;
-        }
-        return movementAllowed;
-    }
-
-    /**
-     * Determines if the slider can move the given displacement amount and if
-     * not, the furthest it can move. The return value is calculated by
-     * asking dependent sliders whether the desired value will conflict with
-     * dependencies and asking the dependent sliders to move as far as
-     * necessary.
-     *
-     * @param displacement the distance the seek bar is being requested to move
-     *        right
-     * @param oldProgress the current progress of the seek bar
-     * @return 0 when it cannot move. A positive integer representing the
-     *         maximum amount it is allowed to move.
-     */
-    int canMove(int displacement, int oldProgress, boolean checkOnly) {
-        int desiredProgress = oldProgress + displacement;
-        // Creates a list of all dependent sliders which conflict with the
-        // current slider's desired progress
-        ArrayList<Node> conflicting = new ArrayList<Node>();
-        for (Node node : displacement < 0 ? mNode.getParents() : mNode.getChildren()) {
-            if ((displacement < 0 && node.getProgress() >= desiredProgress) ||
-                    (displacement > 0 && node.getProgress() <= desiredProgress)) {
-                conflicting.add(node);
-                final DependentSeekBar seekBar = node.getSeekBar();
-                if (checkOnly) {
-                    seekBar.useTempProgress();
-                }
-                if (mUsePreferredProgress) {
-                    seekBar.startShiftEvent();
-                }
-            }
+        if (mNode == null) {
+            setProgress(newProgress);
+            return getProgress() == newProgress;
         }
-
-        /*
-         * Decides based on the contents of conflictingParents the number to
-         * return. If shifting is allowed and the current slider's desired
-         * progress will conflict with 1 or more other sliders, those slider's
-         * will be asked to move and the values which they return will be used
-         * to determine the allowed movement for the current slider.When
-         * shifting is disabled, the current slider can only move as much as the
-         * next min. dependent slider.
-         */
-        int result = 0;
-        if (conflicting.size() == 0 && desiredProgress <= getMax()
-                && desiredProgress >= 0) {
-            result = displacement;
-        } else if (conflicting.size() != 0) {
-            int allowedDisplacement = displacement;
-            final int directionFactor = displacement < 0 ? -1 : 1;
-
-            for (Node conflict : conflicting) {
-                // If the bar has been updated in the meantime, then we may not
-                // need it to move
-                final int conflictProgress = conflict.getProgress();
-                if ((directionFactor < 0 && conflictProgress < oldProgress + allowedDisplacement) ||
-                        (directionFactor > 0 && conflictProgress > oldProgress + allowedDisplacement)) {
-                    continue;
-                }
-
-                final int distance = Math.abs(conflictProgress - desiredProgress) + 1;
-                int temp = displacement - (directionFactor * distance);
-
-                // Determines how much the current slider can move if the child
-                // sliders are expected to move as far as necessary.
-                if (mManager.isShiftingAllowed()) {
-                    temp += conflict.getSeekBar().canMove(
-                            directionFactor * distance,
-                            checkOnly);
-                }
-
-                allowedDisplacement = directionFactor < 0 ?
-                                      Math.max(allowedDisplacement, temp) :
-                                      Math.min(allowedDisplacement, temp);
-            }
-            result = allowedDisplacement;
-        }
-        return result;
+        return mNode.moveTo(newProgress);
     }
 
     /**
@@ -511,6 +560,9 @@ public class DependentSeekBar extends SeekBar {
         case GREATER_THAN:
             mManager.addGreaterThanDependencies(this, indices);
             break;
+        case EQUAL:
+            mManager.addEqualDependencies(this, indices);
+            break;
         }
     }
 
@@ -539,10 +591,31 @@ public class DependentSeekBar extends SeekBar {
         case GREATER_THAN:
             mManager.addGreaterThanDependencies(this, dependentSeekBars);
             break;
+        case EQUAL:
+            mManager.addEqualDependencies(this, dependentSeekBars);
+            break;
         }
 
     }
 
+    /**
+     * Ties this DependentSeekBar to other, so that the progress of this
+     * DependentSeekBar is always the progress of other plus offset. The two
+     * seek bars are moved together, and must already satisfy the dependency.
+     * If there is no {@link DependentSeekBarManager} set, this function does
+     * nothing
+     * 
+     * @param other the DependentSeekBar to create the dependency with
+     * @param offset the fixed difference between the two progresses
+     * 
+     * @see #addDependencies(Dependency, DependentSeekBar...)
+     */
+    public void addEqualDependency(DependentSeekBar other, int offset) {
+        if (mManager == null)
+            return;
+        mManager.addEqualDependency(this, other, offset);
+    }
+
     /**
      * Get the maximum progress which the seek bar can move to given its
      * dependencies.
@@ -551,9 +624,7 @@ public class DependentSeekBar extends SeekBar {
      *         dependencies
      */
     public int getRestrictedMax() {
-        int movement = canMove(getMax() - getProgress() + 1, true);
-        clearTempProgress(false);
-        return getProgress() + movement;
+        return mNode != null ? mNode.getUpperBound() : getMax();
     }
 
     /**
@@ -564,8 +635,148 @@ public class DependentSeekBar extends SeekBar {
      *         dependencies
      */
     public int getRestrictedMin() {
-        int movement = canMove(-(getProgress() + 1), true);
-        clearTempProgress(false);
-        return getProgress() - movement;
+        return mNode != null ? mNode.getLowerBound() : 0;
+    }
+
+    /**
+     * Checks whether {@link #moveTo(int)} would succeed for the given
+     * progress, without moving this or any other seek bar. The answer comes
+     * from bounds which are only recalculated after something in this seek
+     * bar's group of dependencies has changed, so repeated checks are O(1).
+     *
+     * @param progress the progress to check
+     * @return true iff the seek bar can move to progress given its
+     *         dependencies
+     *
+     * @see #clampToFeasible(int)
+     */
+    public boolean isFeasible(int progress) {
+        return progress >= getRestrictedMin() && progress <= getRestrictedMax();
+    }
+
+    /**
+     * Get the progress closest to the given progress which the seek bar can
+     * move to given its dependencies, without moving this or any other seek
+     * bar.
+     *
+     * @param progress the desired progress
+     * @return the closest progress to progress that passes
+     *         {@link #isFeasible(int)}
+     */
+    public int clampToFeasible(int progress) {
+        return Math.max(getRestrictedMin(), Math.min(getRestrictedMax(),
+                progress));
+    }
+
+    /**
+     * Shades the part of the track which the thumb can currently reach given
+     * its dependencies, from {@link #getRestrictedMin()} to
+     * {@link #getRestrictedMax()}. The range is refreshed after every solve
+     * and change to the dependencies rather than while drawing, from bounds
+     * cached by the manager, and the seek bar is only redrawn for it when it
+     * has changed.
+     *
+     * @param show true to shade the allowed range
+     */
+    public void setShowAllowedRange(boolean show) {
+        if (show == mShowAllowedRange) {
+            return;
+        }
+        mShowAllowedRange = show;
+        if (mAttached && mManager != null) {
+            if (show) {
+                mManager.addRangeView(this);
+            } else {
+                mManager.removeRangeView(this);
+            }
+        }
+        if (show) {
+            refreshAllowedRange();
+        }
+        invalidate();
+    }
+
+    /**
+     * @return true iff the allowed range of the thumb is shaded
+     *
+     * @see #setShowAllowedRange(boolean)
+     */
+    public boolean isShowingAllowedRange() {
+        return mShowAllowedRange;
+    }
+
+    /**
+     * Set the color the allowed range is shaded with, which should be
+     * translucent so that the track shows through.
+     *
+     * @param color
+     *
+     * @see #setShowAllowedRange(boolean)
+     */
+    public void setAllowedRangeColor(int color) {
+        mAllowedRangePaint.setColor(color);
+        invalidate();
+    }
+
+    /*
+     * Called by the manager after a solve, so never while drawing. Bounds
+     * are only recomputed if the cached ones no longer hold, and the seek
+     * bar is only redrawn if the range has changed.
+     */
+    void refreshAllowedRange() {
+        removeCallbacks(mRefreshAllowedRange);
+        final int min = getRestrictedMin();
+        final int max = getRestrictedMax();
+        if (min != mAllowedMin || max != mAllowedMax) {
+            mAllowedMin = min;
+            mAllowedMax = max;
+            invalidate();
+        }
+    }
+
+    /*
+     * Called by the manager when the dependencies have changed. The change
+     * may not be complete yet, so the range is refreshed once the event
+     * which made it has been handled.
+     */
+    void scheduleAllowedRangeRefresh() {
+        removeCallbacks(mRefreshAllowedRange);
+        post(mRefreshAllowedRange);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mShowAllowedRange && mManager != null) {
+            mManager.addRangeView(this);
+        }
+        if (mShowAllowedRange) {
+            refreshAllowedRange();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        if (mShowAllowedRange && mManager != null) {
+            mManager.removeRangeView(this);
+        }
+        removeCallbacks(mRefreshAllowedRange);
+        mAttached = false;
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected synchronized void onDraw(Canvas canvas) {
+        final int max = getMax();
+        if (mShowAllowedRange && max > 0) {
+            final int left = getPaddingLeft();
+            final int available = getWidth() - left - getPaddingRight();
+            canvas.drawRect(left + (float) available * mAllowedMin / max,
+                    getPaddingTop(), left + (float) available * mAllowedMax
+                            / max, getHeight() - getPaddingBottom(),
+                    mAllowedRangePaint);
+        }
+        super.onDraw(canvas);
     }
 }
@@ -0,0 +1,93 @@
+package com.oanda.dependentseekbars.lib;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+
+/**
+ * Adapter which shows the seek bars of a {@link DependentSeekBarManager} in a
+ * {@link android.widget.ListView}, or any other AdapterView. The manager keeps
+ * the progress and dependencies of every seek bar, usually added with
+ * {@link DependentSeekBarManager#addVirtualSeekBar(int, int)}, and only the
+ * rows on screen have a {@link DependentSeekBar}. When a row is recycled its
+ * DependentSeekBar is bound to the seek bar of its new position, so the
+ * number of views stays the same however many seek bars the manager holds.
+ *
+ * Subclasses say which seek bar is shown at each position and how rows are
+ * made. Dragging a DependentSeekBar shifts the other seek bars in the manager
+ * whether they are on screen or not, and the ones on screen are updated as
+ * usual.
+ *
+ * @see DependentSeekBarManager#bindSeekBar(DependentSeekBar, int)
+ */
+public abstract class DependentSeekBarAdapter extends BaseAdapter {
+    private final DependentSeekBarManager manager;
+
+    /**
+     * @param manager the manager holding the seek bars shown by the adapter
+     */
+    public DependentSeekBarAdapter(DependentSeekBarManager manager) {
+        if (manager == null)
+            throw new NullPointerException();
+        this.manager = manager;
+    }
+
+    public DependentSeekBarManager getManager() {
+        return manager;
+    }
+
+    /**
+     * @param position
+     * @return the id in the manager of the seek bar shown at position
+     */
+    public abstract int getSeekBarId(int position);
+
+    /**
+     * Creates a new row. The row must contain a {@link DependentSeekBar}
+     * which is not in a manager yet, which is found with
+     * {@link #findSeekBar(View)}.
+     *
+     * @param parent the view the row will be attached to
+     * @return the new row
+     */
+    protected abstract View newView(ViewGroup parent);
+
+    /**
+     * @param row a row created by {@link #newView(ViewGroup)}
+     * @return the DependentSeekBar of row
+     */
+    protected abstract DependentSeekBar findSeekBar(View row);
+
+    /**
+     * Fills in the rest of row for position, such as a label, after its
+     * DependentSeekBar has been bound. Does nothing by default.
+     *
+     * @param row
+     * @param position
+     */
+    protected void bindView(View row, int position) {
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return Integer.valueOf(getSeekBarId(position));
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getSeekBarId(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final View row = convertView != null ? convertView : newView(parent);
+        manager.bindSeekBar(findSeekBar(row), getSeekBarId(position));
+        bindView(row, position);
+        return row;
+    }
+}
@@ -1,6 +1,7 @@
 package com.oanda.dependentseekbars.lib;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import android.content.Context;
 
@@ -18,14 +19,79 @@ import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
  *
  */
 public class DependentSeekBarManager{
-    private ArrayList<DependentSeekBar> seekBars;
-    private ArrayList<ArrayList<Integer>> minDependencies;
-    private ArrayList<ArrayList<Integer>> maxDependencies;
+    // The nodes of the DependentSeekBars in the order they were added.
+    // Removed nodes are only dropped from it when it is next used by index,
+    // so that removing many of them doesn't shift the rest each time
+    private ArrayList<Node> nodes;
+    private boolean nodesCompact = true;
+    // The nodes by id, whether they are bound to a DependentSeekBar or not.
+    // The ids of removed nodes are kept in freeIds and handed out again
+    private ArrayList<Node> nodesById;
+    private int[] freeIds = new int[8];
+    private int freeIdCount = 0;
+    // The progress of the nodes, with their ids as slots
+    private final ProgressStore store = new ProgressStore(16);
     private DependencyGraph dg;
     private boolean shiftingAllowed = true;
+    private ConstraintSolver solver = new GreedyConstraintSolver();
+    private final SolveBudget solveBudget = new SolveBudget();
+    private int modelVersion = 0;
+    private boolean frameCoalescing = false;
+    private FrameScheduler frameScheduler;
+    private boolean asyncSolving = false;
+    private AsyncSolver asyncSolver;
+    // Progress posted from other threads, applied once per frame
+    private final ProgressFeed progressFeed = new ProgressFeed(this);
+    private int updateDepth = 0;
+    private final ArrayList<Node> dirtyNodes = new ArrayList<Node>();
+    private OnConstraintsSolvedListener constraintsSolvedListener;
+    // Views drawing seek bars of this manager themselves, which redraw the
+    // ones a solve has moved
+    private final ArrayList<DependentSeekBarsView> trackViews = new ArrayList<DependentSeekBarsView>();
+    // Attached seek bars which shade their allowed range
+    private final ArrayList<DependentSeekBar> rangeViews = new ArrayList<DependentSeekBar>();
 
     private final int DEFAULT_MAXIMUM_PROGRESS = 100;
 
+    /**
+     * The ways in which DependentSeekBars can be shifted out of the way of a
+     * DependentSeekBar that is being moved.
+     */
+    public enum ShiftMode {
+        /**
+         * Each conflicting DependentSeekBar is pushed exactly as far as
+         * necessary, one at a time.
+         */
+        PUSH,
+        /**
+         * The total movement of the other DependentSeekBars is kept as small
+         * as possible.
+         */
+        MINIMAL_DISPLACEMENT;
+    }
+
+    /**
+     * Listener which is told once about every {@link DependentSeekBar} a
+     * solve has moved, rather than once per DependentSeekBar.
+     *
+     * @see DependentSeekBarManager#setOnConstraintsSolvedListener(OnConstraintsSolvedListener)
+     */
+    public interface OnConstraintsSolvedListener {
+        /**
+         * Called after a solve has moved DependentSeekBars, once their views
+         * have been updated. The arrays are parallel: the DependentSeekBar
+         * with id ids[i] has moved from oldProgress[i] to newProgress[i]. See
+         * {@link DependentSeekBar#getSeekBarId()}.
+         *
+         * @param manager the manager the DependentSeekBars are in
+         * @param ids the ids of the DependentSeekBars which have moved
+         * @param oldProgress their progress before the solve
+         * @param newProgress their progress after the solve
+         */
+        void onConstraintsSolved(DependentSeekBarManager manager, int[] ids,
+                int[] oldProgress, int[] newProgress);
+    }
+
     /**
      * Creates a DependentSeekBarManager that can be used to contain
      * {@link DependentSeekBar}s. By default, the DependentSeekBarManager has a
@@ -34,10 +100,9 @@ public class DependentSeekBarManager{
      * @param context the application environment
      */
     public DependentSeekBarManager() {
-        seekBars = new ArrayList<DependentSeekBar>();
-        minDependencies = new ArrayList<ArrayList<Integer>>();
-        maxDependencies = new ArrayList<ArrayList<Integer>>();
-        dg = new DependencyGraph();
+        nodes = new ArrayList<Node>();
+        nodesById = new ArrayList<Node>();
+        dg = new DependencyGraph(this);
     }
 
     /**
@@ -69,16 +134,89 @@ public class DependentSeekBarManager{
             int maximum) {
         DependentSeekBar seekBar = new DependentSeekBar(context, this,
                 progress, maximum);
-        seekBars.add(seekBar);
+        register(seekBar);
+        return seekBar;
+    }
 
-        minDependencies.add(new ArrayList<Integer>());
-        maxDependencies.add(new ArrayList<Integer>());
+    /**
+     * Create a new {@link DependentRangeSeekBar} and adds it to this
+     * DependentSeekBarManager. The range is a single DependentSeekBar with a
+     * thumb at each end.
+     *
+     * @param context the {@link Context} the view is running in
+     * @param lower the initial lower end of the range
+     * @param upper the initial upper end of the range
+     * @param maximum the maximum value which the upper end can be set to
+     * @return the {@link DependentRangeSeekBar} which was added to the manager
+     */
+    public DependentRangeSeekBar createRangeSeekBar(Context context,
+            int lower, int upper, int maximum) {
+        DependentRangeSeekBar seekBar = new DependentRangeSeekBar(context,
+                this, lower, upper, maximum);
+        register(seekBar);
+        return seekBar;
+    }
 
-        // Create a new node for the seek bar and add it to the dependency graph
-        Node node = dg.addSeekBar(seekBar);
-        seekBar.setNode(node);
+    private void register(DependentSeekBar seekBar) {
+        final Node node = addNode();
+        store.copy(node.getId(), seekBar.getStore(), seekBar.getSlot());
+        dg.setSeekBar(node, seekBar);
+        seekBar.bindNode(node);
+    }
 
-        return seekBar;
+    /*
+     * Creates a node with a new id, and adds it to the dependency graph.
+     */
+    private Node addNode() {
+        final int id;
+        if (freeIdCount > 0) {
+            id = freeIds[--freeIdCount];
+        } else {
+            id = nodesById.size();
+            nodesById.add(null);
+        }
+        return addNode(id);
+    }
+
+    /*
+     * Creates a node with id, which must be free, and adds it to the
+     * dependency graph.
+     */
+    private Node addNode(int id) {
+        store.ensureCapacity(id + 1);
+        progressFeed.ensureCapacity(id + 1);
+        progressFeed.open(id);
+        store.clear(id);
+
+        final Node node = dg.addNode(store, id);
+        node.setId(id);
+        nodesById.set(id, node);
+        nodes.add(node);
+        invalidateModel();
+        return node;
+    }
+
+    /**
+     * Adds a seek bar to the manager which has no view. It takes part in
+     * dependencies and is shifted like any other {@link DependentSeekBar},
+     * but its state is only kept in the manager. This lets the manager hold
+     * far more seek bars than are ever shown at once: a view is bound to it
+     * with {@link #bindSeekBar(DependentSeekBar, int)} while it is on screen,
+     * for example by a {@link DependentSeekBarAdapter}.
+     *
+     * @param progress the initial progress of the seek bar
+     * @param maximum the maximum value which the progress can be set to
+     * @return the id of the new seek bar
+     *
+     * @see #addDependenciesById(int, DependentSeekBar.Dependency, int...)
+     */
+    public int addVirtualSeekBar(int progress, int maximum) {
+        final Node node = addNode();
+        final int id = node.getId();
+        store.max[id] = Math.max(0, maximum);
+        store.progress[id] = Math.max(0, Math.min(store.max[id], progress));
+        store.preferredProgress[id] = store.progress[id];
+        return id;
     }
 
     /**
@@ -89,25 +227,464 @@ public class DependentSeekBarManager{
      * @param seekBar
      */
     public void addSeekBar(DependentSeekBar seekBar) {
-        if(seekBars.contains(seekBar))
+        if(contains(seekBar))
             return;
 
-        seekBars.add(seekBar);
+        // A DependentSeekBar bound to another manager leaves it first
+        if (seekBar.getNode() != null)
+            seekBar.getNode().getManager().unbindSeekBar(seekBar);
+        seekBar.setManager(this);
+        register(seekBar);
+    }
 
-        minDependencies.add(new ArrayList<Integer>());
-        maxDependencies.add(new ArrayList<Integer>());
+    /**
+     * @param index
+     * @return the {@link DependentSeekBar} at index, or null if there is none
+     *         or the seek bar at index is not bound to a view
+     */
+    public DependentSeekBar getSeekBar(int index) {
+        compactNodes();
+        if (index < 0 || index >= nodes.size()) {
+            return null;
+        }
 
-        Node node = dg.addSeekBar(seekBar);
-        seekBar.setNode(node);
+        return nodes.get(index).getSeekBar();
+    }
+
+    /**
+     * Get the {@link DependentSeekBar} with the given id. Unlike indices, ids
+     * don't change when other DependentSeekBars are removed, but the id of a
+     * removed DependentSeekBar may be given to one which is added later.
+     *
+     * @param id the id of the DependentSeekBar
+     * @return the DependentSeekBar with that id, or null if there is none
+     *         or it is not bound to a view
+     *
+     * @see DependentSeekBar#getSeekBarId()
+     */
+    public DependentSeekBar getSeekBarById(int id) {
+        final Node node = findNode(id);
+        return node != null ? node.getSeekBar() : null;
+    }
+
+    /**
+     * @return the number of {@link DependentSeekBar}s in the manager,
+     *         including those without a view
+     */
+    public int getSeekBarCount() {
+        return nodesById.size() - freeIdCount;
+    }
+
+    /**
+     * @param seekBar
+     * @return true iff seekBar has been added to this manager and not removed,
+     *         or is bound to one of its seek bars
+     */
+    public boolean contains(DependentSeekBar seekBar) {
+        final Node node = seekBar.getNode();
+        return node != null && contains(node);
+    }
+
+    private boolean contains(Node node) {
+        final int id = node.getId();
+        return id >= 0 && id < nodesById.size() && nodesById.get(id) == node;
+    }
+
+    private void unregister(Node node, boolean restructureDependencies) {
+        dg.removeNode(node);
+        final int id = node.getId();
+        nodesById.set(id, null);
+        progressFeed.close(id);
+        freeId(id);
+        node.setId(-1);
+        final DependentSeekBar seekBar = node.getSeekBar();
+        if (seekBar != null) {
+            seekBar.bindNode(null);
+        }
+        nodesCompact = false;
+        invalidateModel();
+    }
+
+    /*
+     * Lets id be handed out again by addNode().
+     */
+    private void freeId(int id) {
+        if (freeIdCount == freeIds.length) {
+            int[] newFreeIds = new int[freeIdCount * 2];
+            System.arraycopy(freeIds, 0, newFreeIds, 0, freeIdCount);
+            freeIds = newFreeIds;
+        }
+        freeIds[freeIdCount++] = id;
+    }
+
+    /*
+     * Drops the removed nodes from the index order.
+     */
+    private void compactNodes() {
+        if (nodesCompact) {
+            return;
+        }
+        int size = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node node = nodes.get(i);
+            if (contains(node)) {
+                nodes.set(size++, node);
+            }
+        }
+        for (int i = nodes.size() - 1; i >= size; i--) {
+            nodes.remove(i);
+        }
+        nodesCompact = true;
+    }
+
+    /**
+     * Makes seekBar show the seek bar with the given id, so that views can be
+     * recycled while the manager keeps the state of every seek bar. seekBar
+     * takes the progress and maximum of the seek bar it shows, and moving it
+     * moves that seek bar. Any view which was showing it before is unbound,
+     * and so is seekBar from what it was showing.
+     *
+     * @param seekBar the view to bind
+     * @param id the id of the seek bar to show
+     * @throws IndexOutOfBoundsException if there is no seek bar with that id
+     *
+     * @see #addVirtualSeekBar(int, int)
+     * @see DependentSeekBarAdapter
+     */
+    public void bindSeekBar(DependentSeekBar seekBar, int id) {
+        final Node node = requireNode(id);
+        if (node.getSeekBar() == seekBar) {
+            return;
+        }
+        settle();
+        if (seekBar.getNode() != null) {
+            seekBar.getNode().getManager().unbindSeekBar(seekBar);
+        }
+        final DependentSeekBar previous = node.getSeekBar();
+        if (previous != null) {
+            dg.setSeekBar(node, null);
+            previous.bindNode(null);
+        }
         seekBar.setManager(this);
+        dg.setSeekBar(node, seekBar);
+        seekBar.bindNode(node);
     }
 
-    public DependentSeekBar getSeekBar(int index) {
-        if (index < 0 || index >= seekBars.size()) {
+    /**
+     * Detaches seekBar from the seek bar it shows, which stays in the manager
+     * without a view. seekBar keeps its current state but no longer has any
+     * dependencies.
+     *
+     * @param seekBar
+     *
+     * @see #bindSeekBar(DependentSeekBar, int)
+     */
+    public void unbindSeekBar(DependentSeekBar seekBar) {
+        final Node node = seekBar.getNode();
+        if (node == null || !contains(node)) {
+            return;
+        }
+        settle();
+        dg.setSeekBar(node, null);
+        seekBar.bindNode(null);
+    }
+
+    /**
+     * Unbinds every {@link DependentSeekBar} in the manager, leaving all of
+     * the seek bars in the manager without a view. Their progress and
+     * dependencies are kept, so a manager which is retained across a
+     * configuration change can let go of the views of the old Activity, and
+     * the new views are bound to the same seek bars again with
+     * {@link #bindSeekBar(DependentSeekBar, int)}, without adding any seek
+     * bars or dependencies again. Listeners set on the manager are kept as
+     * well, and may have to be replaced.
+     *
+     * @see DependentSeekBar#getSeekBarId()
+     */
+    public void unbindAllSeekBars() {
+        settle();
+        for (int i = 0; i < nodesById.size(); i++) {
+            final Node node = nodesById.get(i);
+            if (node != null && node.getSeekBar() != null) {
+                final DependentSeekBar seekBar = node.getSeekBar();
+                dg.setSeekBar(node, null);
+                seekBar.bindNode(null);
+            }
+        }
+    }
+
+    /**
+     * Packs the model of the manager into a {@link SavedModel}, which can be
+     * put in the saved instance state of an Activity: the ids, progress,
+     * preferred progress, maximum, extent and pinned state of every seek bar,
+     * and the Less Than, Greater Than and Equal dependencies between them.
+     *
+     * @return the model of the manager
+     * @throws IllegalStateException if the manager has sum constraints, lanes
+     *         or groups, which are not saved
+     *
+     * @see #restoreModel(SavedModel)
+     */
+    public SavedModel saveModel() {
+        settle();
+        compactNodes();
+        final int size = nodes.size();
+        final int[] ids = new int[size];
+        final int[] progress = new int[size];
+        final int[] preferredProgress = new int[size];
+        final int[] max = new int[size];
+        final int[] extent = new int[size];
+        final boolean[] pinned = new boolean[size];
+        int edgeCount = 0;
+        int equalCount = 0;
+        for (int i = 0; i < size; i++) {
+            final Node node = nodes.get(i);
+            if (node.getSumConstraint() != null || node.getLaneDuration() != 0
+                    || node.getGroup() != null)
+                throw new IllegalStateException(
+                        "Sum constraints, lanes and groups can't be saved");
+            final int id = node.getId();
+            ids[i] = id;
+            progress[i] = store.progress[id];
+            preferredProgress[i] = store.preferredProgress[id];
+            max[i] = store.max[id];
+            extent[i] = store.extent[id];
+            pinned[i] = store.pinned[id];
+            edgeCount += node.getChildren().size();
+            if (node.getEqualityRoot() != node) {
+                equalCount++;
+            }
+        }
+
+        final int[] lessThan = new int[edgeCount * 2];
+        final int[] equal = new int[equalCount * 3];
+        int edge = 0;
+        int member = 0;
+        for (int i = 0; i < size; i++) {
+            final Node node = nodes.get(i);
+            final ArrayList<Node> children = node.getChildren();
+            for (int j = 0; j < children.size(); j++) {
+                lessThan[edge++] = node.getId();
+                lessThan[edge++] = children.get(j).getId();
+            }
+            final Node root = node.getEqualityRoot();
+            if (root != node) {
+                equal[member++] = node.getId();
+                equal[member++] = root.getId();
+                equal[member++] = node.getEqualityOffset();
+            }
+        }
+        return new SavedModel(nodesById.size(), ids, progress,
+                preferredProgress, max, extent, pinned, lessThan, equal);
+    }
+
+    /**
+     * Restores a model saved with {@link #saveModel()} into this manager,
+     * which must not have any seek bars yet. The seek bars keep the ids they
+     * were saved with and have no views until they are bound with
+     * {@link #bindSeekBar(DependentSeekBar, int)}. The dependencies are added
+     * straight to the graph without being checked again, so restoring takes
+     * time linear in the number of seek bars and dependencies.
+     *
+     * @param model
+     * @throws IllegalStateException if the manager already has seek bars
+     */
+    public void restoreModel(SavedModel model) {
+        if (getSeekBarCount() > 0)
+            throw new IllegalStateException(
+                    "A model can only be restored into an empty manager");
+        nodes.clear();
+        nodesCompact = true;
+        nodesById.clear();
+        freeIdCount = 0;
+        for (int id = 0; id < model.idCount; id++) {
+            nodesById.add(null);
+        }
+        store.ensureCapacity(model.idCount);
+        for (int i = 0; i < model.ids.length; i++) {
+            final int id = model.ids[i];
+            addNode(id);
+            store.progress[id] = model.progress[i];
+            store.preferredProgress[id] = model.preferredProgress[i];
+            store.max[id] = model.max[i];
+            store.extent[id] = model.extent[i];
+            store.pinned[id] = model.pinned[i];
+        }
+        // The ids which were free when the model was saved are handed out
+        // again, lowest first
+        for (int id = model.idCount - 1; id >= 0; id--) {
+            if (nodesById.get(id) == null) {
+                freeId(id);
+            }
+        }
+        for (int i = 0; i < model.lessThan.length; i += 2) {
+            dg.restoreLessThanDependency(nodesById.get(model.lessThan[i]),
+                    nodesById.get(model.lessThan[i + 1]));
+        }
+        for (int i = 0; i < model.equal.length; i += 3) {
+            dg.restoreEqualDependency(nodesById.get(model.equal[i]),
+                    nodesById.get(model.equal[i + 1]), model.equal[i + 2]);
+        }
+        invalidateModel();
+    }
+
+    /*
+     * Solves the drags which are still waiting for a frame or a worker, so
+     * that nothing is applied to a view after it has been rebound.
+     */
+    private void settle() {
+        if (frameScheduler != null) {
+            frameScheduler.flush();
+        }
+        if (asyncSolver != null) {
+            asyncSolver.settleAll();
+        }
+    }
+
+    /**
+     * Add dependencies between the seek bar with id and the seek bars with
+     * ids, whether they are bound to a view or not.
+     *
+     * @param id the id of the dependent seek bar
+     * @param relationship the relationship the dependent seek bar will have
+     *        with the others
+     * @param ids the ids of the other seek bars
+     * @throws IndexOutOfBoundsException if one of the ids is not in use
+     *
+     * @see DependentSeekBar#addDependencies(DependentSeekBar.Dependency, int...)
+     */
+    public void addDependenciesById(int id,
+            DependentSeekBar.Dependency relationship, int... ids) {
+        final Node node = requireNode(id);
+        final Node[] others = new Node[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            others[i] = requireNode(ids[i]);
+        }
+        invalidateModel();
+        switch (relationship) {
+        case LESS_THAN:
+            dg.addLessThanDependencies(node, others);
+            break;
+        case GREATER_THAN:
+            dg.addGreaterThanDependencies(node, others);
+            break;
+        case EQUAL:
+            dg.addEqualDependencies(node, others);
+            break;
+        }
+    }
+
+    /**
+     * @param id
+     * @return the progress of the seek bar with id, whether it is bound to a
+     *         view or not
+     * @throws IndexOutOfBoundsException if there is no seek bar with that id
+     */
+    public int getProgressById(int id) {
+        return requireNode(id).getProgress();
+    }
+
+    /**
+     * Moves the seek bar with id to progress, shifting others out of the way
+     * as {@link DependentSeekBar#moveTo(int)} does, whether it is bound to a
+     * view or not.
+     *
+     * @param id
+     * @param progress the desired progress
+     * @return true iff the seek bar was able to move to progress
+     * @throws IndexOutOfBoundsException if there is no seek bar with that id
+     */
+    public boolean moveToById(int id, int progress) {
+        return requireNode(id).moveTo(progress);
+    }
+
+    /**
+     * Sets the progress of the seek bar with id from any thread, such as a
+     * thread receiving live data. The progress is applied on the UI thread on
+     * the next display frame, and only the latest progress posted for each
+     * seek bar before then is applied, so posting far more often than the
+     * display refreshes costs little. All of the seek bars with new progress
+     * are moved in one update, as far towards their progress as their
+     * dependencies allow, and the manager's listener hears about them in a
+     * single call. Posting never blocks or takes a lock. Progress posted
+     * for a seek bar which is removed before it is applied is dropped.
+     *
+     * @param id the id of the seek bar, which must have been added before
+     * @param progress the desired progress
+     * @throws IndexOutOfBoundsException if no seek bar has ever had that id
+     *
+     * @see #flushPostedProgress()
+     */
+    public void postProgressById(int id, int progress) {
+        progressFeed.post(id, progress);
+    }
+
+    /**
+     * Applies the progress posted with {@link #postProgressById(int, int)}
+     * now rather than on the next frame. Must be called on the UI thread.
+     */
+    public void flushPostedProgress() {
+        progressFeed.drain();
+    }
+
+    /*
+     * Moves the seek bar with id towards progress within the solve budget.
+     * Returns true if it ran out of budget before getting there, so that the
+     * progress is applied again on the next frame.
+     */
+    boolean applyPostedProgress(int id, int progress) {
+        final Node node = findNode(id);
+        if (node == null) {
+            return false;
+        }
+        return node.drag(Math.max(0, Math.min(node.getMax(), progress)));
+    }
+
+    private Node requireNode(int id) {
+        final Node node = findNode(id);
+        if (node == null)
+            throw new IndexOutOfBoundsException();
+        return node;
+    }
+
+    /**
+     * @return the node with id, or null if there is none
+     */
+    Node findNode(int id) {
+        if (id < 0 || id >= nodesById.size()) {
             return null;
         }
+        return nodesById.get(id);
+    }
+
+    void addTrackView(DependentSeekBarsView view) {
+        if (!trackViews.contains(view)) {
+            trackViews.add(view);
+        }
+    }
+
+    void removeTrackView(DependentSeekBarsView view) {
+        trackViews.remove(view);
+    }
+
+    void addRangeView(DependentSeekBar seekBar) {
+        if (!rangeViews.contains(seekBar)) {
+            rangeViews.add(seekBar);
+        }
+    }
+
+    void removeRangeView(DependentSeekBar seekBar) {
+        rangeViews.remove(seekBar);
+    }
 
-        return seekBars.get(index);
+    /*
+     * Lets the seek bars shading their allowed range refresh it after a
+     * solve, outside of drawing.
+     */
+    private void notifyRangeViews() {
+        for (int i = 0; i < rangeViews.size(); i++) {
+            rangeViews.get(i).refreshAllowedRange();
+        }
     }
 
     /**
@@ -126,11 +703,11 @@ public class DependentSeekBarManager{
      * @see #removeSeekBar(DependentSeekBar, boolean)
      */
     public boolean removeSeekBar(int index, boolean restructureDependencies) {
-        if (index >= seekBars.size() || index < 0)
+        compactNodes();
+        if (index < 0 || index >= nodes.size())
             return false;
 
-        dg.removeSeekBar(seekBars.get(index), restructureDependencies);
-        seekBars.remove(index);
+        unregister(nodes.get(index), restructureDependencies);
         return true;
     }
 
@@ -150,14 +727,11 @@ public class DependentSeekBarManager{
      */
     public boolean removeSeekBar(DependentSeekBar dependent,
             boolean restructureDependencies) {
-        for (DependentSeekBar seekBar : seekBars) {
-            if (seekBar.equals(dependent)) {
-                dg.removeSeekBar(dependent, restructureDependencies);
-                seekBars.remove(seekBar);
-                return true;
-            }
-        }
-        return false;
+        if (dependent == null || !contains(dependent))
+            return false;
+
+        unregister(dependent.getNode(), restructureDependencies);
+        return true;
     }
 
     /**
@@ -177,17 +751,19 @@ public class DependentSeekBarManager{
     void addLessThanDependencies(DependentSeekBar dependentSeekBar,
             int[] limitingIndices) {
         checkIndices(limitingIndices);
-        dg.addLessThanDependencies(dependentSeekBar,
-                getSubclassedSeekBars(limitingIndices));
+        invalidateModel();
+        dg.addLessThanDependencies(dependentSeekBar.getNode(),
+                getNodes(limitingIndices));
     }
 
     void addLessThanDependencies(DependentSeekBar dependentSeekBar,
             DependentSeekBar[] limiting) {
 
         for (DependentSeekBar limit : limiting) {
-            if (limit == null || !seekBars.contains(limit))
+            if (limit == null || !contains(limit))
                 throw new NullPointerException();
         }
+        invalidateModel();
         dg.addLessThanDependencies(dependentSeekBar, getSubclassedSeekBars(limiting));
     }
 
@@ -208,21 +784,165 @@ public class DependentSeekBarManager{
     void addGreaterThanDependencies(DependentSeekBar dependentSeekBar,
             int[] limitingIndices) {
         checkIndices(limitingIndices);
-        dg.addGreaterThanDependencies(dependentSeekBar,
-                getSubclassedSeekBars(limitingIndices));
+        invalidateModel();
+        dg.addGreaterThanDependencies(dependentSeekBar.getNode(),
+                getNodes(limitingIndices));
     }
 
     void addGreaterThanDependencies(DependentSeekBar dependentSeekBar,
             DependentSeekBar[] limiting) {
 
         for (DependentSeekBar limit : limiting) {
-            if (limit == null || !seekBars.contains(limit))
+            if (limit == null || !contains(limit))
                 throw new NullPointerException();
         }
 
+        invalidateModel();
         dg.addGreaterThanDependencies(dependentSeekBar, getSubclassedSeekBars(limiting));
     }
 
+    /**
+     * Add dependencies between the {@link DependentSeekBar} dependentSeekBar
+     * and the DependentSeekBars at indices. The dependencies will ensure that
+     * all of them always have the same progress. The index values correspond
+     * to the order in which the DependentSeekBar's were added.
+     *
+     * @param dependentSeekBar
+     * @param indices the indices of the DependentSeekBars which must have the
+     *        same progress as dependentSeekBar
+     */
+    void addEqualDependencies(DependentSeekBar dependentSeekBar,
+            int[] indices) {
+        checkIndices(indices);
+        invalidateModel();
+        dg.addEqualDependencies(dependentSeekBar.getNode(),
+                getNodes(indices));
+    }
+
+    void addEqualDependencies(DependentSeekBar dependentSeekBar,
+            DependentSeekBar[] others) {
+
+        for (DependentSeekBar other : others) {
+            if (other == null || !contains(other))
+                throw new NullPointerException();
+        }
+
+        invalidateModel();
+        dg.addEqualDependencies(dependentSeekBar, getSubclassedSeekBars(others));
+    }
+
+    void addEqualDependency(DependentSeekBar dependentSeekBar,
+            DependentSeekBar other, int offset) {
+        if (other == null || !contains(other))
+            throw new NullPointerException();
+
+        invalidateModel();
+        dg.addEqualDependency(dependentSeekBar, other, offset);
+    }
+
+    /**
+     * Add a {@link SumConstraint} which keeps the progresses of the given
+     * {@link DependentSeekBar}s summing to total. When one of them moves, the
+     * others are rebalanced to make up for it. The DependentSeekBars must
+     * already sum to total, and can't have any other dependencies.
+     *
+     * @param total the sum of the progresses
+     * @param group the DependentSeekBars in the group
+     * @return the new constraint, which can be used to choose how the
+     *         DependentSeekBars are rebalanced
+     */
+    public SumConstraint addSumConstraint(int total,
+            DependentSeekBar... group) {
+
+        for (DependentSeekBar seekBar : group) {
+            if (seekBar == null || !contains(seekBar))
+                throw new NullPointerException();
+        }
+
+        invalidateModel();
+        return dg.addSumConstraint(getSubclassedSeekBars(group), total);
+    }
+
+    /**
+     * Create a new, empty {@link Lane}. Tasks added to the lane with
+     * {@link #addToLane(Lane, DependentSeekBar, int)} are kept from
+     * overlapping each other, shifting neighbouring tasks out of the way when
+     * shifting is allowed.
+     *
+     * @return the new lane
+     */
+    public Lane createLane() {
+        return new Lane();
+    }
+
+    /**
+     * Add a {@link DependentSeekBar} to lane as a task which starts at its
+     * progress and lasts for duration. The task must not overlap any of the
+     * tasks already in the lane.
+     *
+     * @param lane the lane to add the task to
+     * @param seekBar the DependentSeekBar representing the start of the task
+     * @param duration the length of the task, at least 1
+     */
+    public void addToLane(Lane lane, DependentSeekBar seekBar, int duration) {
+        if (lane == null || seekBar == null || !contains(seekBar))
+            throw new NullPointerException();
+
+        invalidateModel();
+        dg.addToLane(lane, seekBar, duration);
+    }
+
+    /**
+     * Remove a {@link DependentSeekBar} from the {@link Lane} it was added to.
+     * The tasks before and after it stay in order.
+     *
+     * @param seekBar
+     */
+    public void removeFromLane(DependentSeekBar seekBar) {
+        invalidateModel();
+        dg.removeFromLane(seekBar);
+    }
+
+    /**
+     * Group {@link DependentSeekBar}s into a {@link SeekBarGroup}, which moves
+     * as a whole when a DependentSeekBar outside of it pushes one of its
+     * members. The DependentSeekBars must not be in a group yet, and any
+     * DependentSeekBar tied to one of them by an Equal dependency has to be
+     * part of the group as well.
+     *
+     * @param group the DependentSeekBars in the group
+     * @return the new group
+     */
+    public SeekBarGroup createGroup(DependentSeekBar... group) {
+
+        for (DependentSeekBar seekBar : group) {
+            if (seekBar == null || !contains(seekBar))
+                throw new NullPointerException();
+        }
+
+        invalidateModel();
+        return dg.addGroup(getSubclassedSeekBars(group), new SeekBarGroup[0]);
+    }
+
+    /**
+     * Nest {@link SeekBarGroup}s in a new group, such as the tasks of a phase,
+     * which moves as a whole when a DependentSeekBar outside of it pushes one
+     * of its members. The groups must not be nested in another group yet.
+     *
+     * @param groups the groups to nest
+     * @return the new group
+     */
+    public SeekBarGroup createGroup(SeekBarGroup... groups) {
+
+        for (SeekBarGroup group : groups) {
+            if (group == null)
+                throw new NullPointerException();
+        }
+
+        invalidateModel();
+        return dg.addGroup(new DependentSeekBar[0], groups);
+    }
+
     private DependentSeekBar[] getSubclassedSeekBars(
             DependentSeekBar[] dependentSeekBars) {
         DependentSeekBar[] limitingSeekBars = new DependentSeekBar[dependentSeekBars.length];
@@ -233,22 +953,64 @@ public class DependentSeekBarManager{
         return limitingSeekBars;
     }
 
-    private DependentSeekBar[] getSubclassedSeekBars(int[] indices) {
-        DependentSeekBar[] limitingSeekBars = new DependentSeekBar[indices.length];
+    private Node[] getNodes(int[] indices) {
+        Node[] limitingNodes = new Node[indices.length];
         for (int i = 0; i < indices.length; i++) {
-            limitingSeekBars[i] = seekBars.get(indices[i]);
+            limitingNodes[i] = nodes.get(indices[i]);
         }
 
-        return limitingSeekBars;
+        return limitingNodes;
     }
 
     private void checkIndices(int[] indices) {
+        compactNodes();
         for (int i = 0; i < indices.length; i++) {
-            if (indices[i] >= seekBars.size() || indices[i] < 0)
+            if (indices[i] >= nodes.size() || indices[i] < 0)
                 throw new IndexOutOfBoundsException();
         }
     }
 
+    /**
+     * Get the number of independent groups of {@link DependentSeekBar}s in the
+     * manager. Two DependentSeekBars are in the same group iff there is a
+     * chain of dependencies between them.
+     *
+     * @return the number of connected components of the dependency graph
+     *
+     * @see #getComponent(DependentSeekBar)
+     */
+    public int getComponentCount() {
+        return dg.getComponentCount();
+    }
+
+    /**
+     * Get every {@link DependentSeekBar} which the given DependentSeekBar is
+     * related to through a chain of dependencies. Moving any DependentSeekBar
+     * can only ever shift the other DependentSeekBars in its component.
+     *
+     * @param seekBar a DependentSeekBar contained in the manager
+     * @return the DependentSeekBars in the same component as seekBar,
+     *         including seekBar itself. Seek bars which are not bound to a
+     *         view are left out.
+     *
+     * @see #getComponentCount()
+     */
+    public ArrayList<DependentSeekBar> getComponent(DependentSeekBar seekBar) {
+        Node node = dg.getNode(seekBar);
+        if (node == null) {
+            throw new NullPointerException();
+        }
+        List<Node> component = dg.getComponent(node);
+        ArrayList<DependentSeekBar> result = new ArrayList<DependentSeekBar>(
+                component.size());
+        for (Node member : component) {
+            if (member.getSeekBar() != null) {
+                result.add(member.getSeekBar());
+            }
+        }
+        return result;
+    }
+
     /**
      * When shifting is enabled, the DependentSeekBarManager will attempt to
      * move other seek bars which are dependent on seek bar being adjusted and
@@ -275,4 +1037,301 @@ public class DependentSeekBarManager{
         shiftingAllowed = b;
     }
 
+    /**
+     * Set how other {@link DependentSeekBar}s are shifted out of the way when
+     * shifting is allowed. This replaces the current solver with the solver
+     * for the given mode. The default mode is {@link ShiftMode#PUSH}.
+     *
+     * Only {@link ShiftMode#MINIMAL_DISPLACEMENT} precomputes how every
+     * reachable DependentSeekBar responds to a drag when the drag starts, so
+     * that each move of the drag only visits the DependentSeekBars it moves.
+     * In {@link ShiftMode#PUSH} every move is solved as it happens, and only
+     * moves over progress values already visited during the drag are
+     * replayed from a cache.
+     *
+     * @param mode the shift mode to use
+     */
+    public void setShiftMode(ShiftMode mode) {
+        switch (mode) {
+        case PUSH:
+            setConstraintSolver(new GreedyConstraintSolver());
+            break;
+        case MINIMAL_DISPLACEMENT:
+            setConstraintSolver(new MinimalDisplacementSolver());
+            break;
+        }
+    }
+
+    /**
+     * Limit the number of DependentSeekBars the solver may visit while
+     * handling a single progress change. When the limit is reached, the
+     * DependentSeekBars that have not been visited yet are treated as if they
+     * were pinned, so the moved DependentSeekBar may end up moving less than
+     * requested. The remaining movement is picked up on
+     * the next event, which is given twice the budget of the one before so
+     * that it gets further, up to 16 times the limit. This puts a hard upper
+     * bound on the time spent on the UI thread per progress change.
+     *
+     * @param maxVisits the maximum number of visits per event, or 0 for no
+     *        limit (the default)
+     *
+     * @see #setSolveTimeBudget(long)
+     */
+    public void setSolveVisitBudget(int maxVisits) {
+        solveBudget.setMaxVisits(maxVisits);
+    }
+
+    /**
+     * Limit the time the solver may spend handling a single progress change.
+     * This behaves the same as {@link #setSolveVisitBudget(int)}, except that
+     * the budget is measured in wall clock time.
+     *
+     * @param maxNanos the maximum time per event in nanoseconds, or 0 for no
+     *        limit (the default)
+     *
+     * @see #setSolveVisitBudget(int)
+     */
+    public void setSolveTimeBudget(long maxNanos) {
+        solveBudget.setMaxNanos(maxNanos);
+    }
+
+    SolveBudget getSolveBudget() {
+        return solveBudget;
+    }
+
+    /**
+     * When enabled, dragging a {@link DependentSeekBar} no longer runs the
+     * solver for every touch event. Only the latest position of the thumb is
+     * recorded, and it is solved once per display frame, just before the
+     * frame is drawn. Touch events often arrive faster than the display
+     * refreshes, so this saves the solves whose result would never be seen.
+     * Progress set from code is still solved immediately. Disabled by
+     * default.
+     *
+     * @param enabled true to solve drags at most once per frame
+     *
+     * @see #isFrameCoalescing()
+     */
+    public void setFrameCoalescing(boolean enabled) {
+        if (!enabled && frameScheduler != null) {
+            frameScheduler.flush();
+        }
+        frameCoalescing = enabled;
+    }
+
+    /**
+     * @return true iff drags are solved at most once per display frame
+     *
+     * @see #setFrameCoalescing(boolean)
+     */
+    public boolean isFrameCoalescing() {
+        return frameCoalescing;
+    }
+
+    /**
+     * Set a listener which is told about every {@link DependentSeekBar} moved
+     * by a solve in a single call, with their old and new progress. Updating
+     * the UI or a model from it saves doing so separately from the
+     * {@link android.widget.SeekBar.OnSeekBarChangeListener} of each
+     * DependentSeekBar in a cascade.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setOnConstraintsSolvedListener(
+            OnConstraintsSolvedListener listener) {
+        constraintsSolvedListener = listener;
+    }
+
+    /**
+     * Starts collecting the progress changes made by a solve. Until the
+     * matching {@link #endUpdate()}, solvers only change the progress in the
+     * model and the DependentSeekBars they move are recorded as dirty. A
+     * DependentSeekBar which is pushed several times in one solve is then
+     * redrawn, and its listener told, only once. Calls may be nested.
+     *
+     * @see #setOnConstraintsSolvedListener(OnConstraintsSolvedListener)
+     */
+    void beginUpdate() {
+        updateDepth++;
+    }
+
+    /**
+     * Ends the update started by {@link #beginUpdate()}. When the outermost
+     * update ends, the view of every dirty DependentSeekBar is moved to its
+     * final progress, and the {@link OnConstraintsSolvedListener} is told
+     * about all of them at once.
+     */
+    void endUpdate() {
+        if (--updateDepth > 0) {
+            return;
+        }
+        updateDepth = 0;
+        if (dirtyNodes.isEmpty()) {
+            return;
+        }
+        // A listener may start another solve while the views are updated,
+        // which collects a dirty set of its own
+        final Node[] dirty = dirtyNodes.toArray(new Node[dirtyNodes.size()]);
+        dirtyNodes.clear();
+
+        int[] ids = null;
+        int[] oldProgress = null;
+        int[] newProgress = null;
+        int changed = 0;
+        if (constraintsSolvedListener != null) {
+            ids = new int[dirty.length];
+            oldProgress = new int[dirty.length];
+            newProgress = new int[dirty.length];
+            for (Node node : dirty) {
+                if (node.getProgressBeforeUpdate() != node.getOldProgress()) {
+                    ids[changed] = node.getId();
+                    oldProgress[changed] = node.getProgressBeforeUpdate();
+                    newProgress[changed] = node.getOldProgress();
+                    changed++;
+                }
+            }
+        }
+        for (Node node : dirty) {
+            node.flushProgress();
+        }
+        for (int i = 0; i < trackViews.size(); i++) {
+            trackViews.get(i).onSeekBarsMoved(dirty);
+        }
+        notifyRangeViews();
+        if (changed > 0) {
+            if (changed < dirty.length) {
+                ids = trim(ids, changed);
+                oldProgress = trim(oldProgress, changed);
+                newProgress = trim(newProgress, changed);
+            }
+            constraintsSolvedListener.onConstraintsSolved(this, ids,
+                    oldProgress, newProgress);
+        }
+    }
+
+    private static int[] trim(int[] values, int length) {
+        final int[] trimmed = new int[length];
+        System.arraycopy(values, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    void markDirty(Node node) {
+        dirtyNodes.add(node);
+    }
+
+    /**
+     * When enabled, dragging a {@link DependentSeekBar} solves the new
+     * position on a worker thread, against a copy of the dependencies and the
+     * progress of its component. The dragged thumb follows the finger right
+     * away and the other DependentSeekBars catch up when the solve is done. A
+     * newer position cancels a solve which is still running, so only the
+     * latest one is applied. When the thumb is let go, the final position is
+     * solved on the UI thread.
+     *
+     * Only the {@link ShiftMode#MINIMAL_DISPLACEMENT} shift mode is solved on
+     * the worker, as the worker solves a copy of the graph the same way. In
+     * any other mode drags are solved on the UI thread, so that the bars do
+     * not jump when the thumb is let go. Components with equal dependencies,
+     * sum constraints or {@link SeekBarGroup}s, and drags of the lower thumb
+     * of a {@link DependentRangeSeekBar}, are always solved on the UI thread.
+     * Solves on the worker do not use the solve budget. Disabling it stops
+     * the worker thread. Disabled by default.
+     *
+     * @param enabled true to solve drags on a worker thread
+     *
+     * @see #isAsyncSolving()
+     */
+    public void setAsyncSolving(boolean enabled) {
+        if (!enabled && asyncSolver != null) {
+            asyncSolver.shutdown();
+        }
+        asyncSolving = enabled;
+    }
+
+    /**
+     * @return true iff drags are solved on a worker thread
+     *
+     * @see #setAsyncSolving(boolean)
+     */
+    public boolean isAsyncSolving() {
+        return asyncSolving;
+    }
+
+    AsyncSolver getAsyncSolver() {
+        if (asyncSolver == null) {
+            asyncSolver = new AsyncSolver(this);
+        }
+        return asyncSolver;
+    }
+
+    List<Node> getComponent(Node node) {
+        return dg.getComponent(node);
+    }
+
+    FrameScheduler getFrameScheduler() {
+        if (frameScheduler == null) {
+            frameScheduler = new FrameScheduler();
+        }
+        return frameScheduler;
+    }
+
+    /**
+     * The model version changes every time DependentSeekBars or dependencies
+     * are added or removed, a DependentSeekBar's maximum or pinned state
+     * changes, or the {@link ConstraintSolver} is replaced. Solvers can use
+     * it to tell whether work they have cached is still valid.
+     *
+     * @return the current version of the manager's model
+     */
+    int getModelVersion() {
+        return modelVersion;
+    }
+
+    void invalidateModel() {
+        modelVersion++;
+        // The version changes before the model does, so the bounds can't be
+        // computed yet
+        for (int i = 0; i < rangeViews.size(); i++) {
+            rangeViews.get(i).scheduleAllowedRangeRefresh();
+        }
+    }
+
+    int getComponentStamp(Node node) {
+        return dg.getComponentStamp(node);
+    }
+
+    void touchComponent(Node node) {
+        dg.touchComponent(node);
+    }
+
+    /**
+     * Get the {@link ConstraintSolver} which decides how far the
+     * {@link DependentSeekBar}s in this manager can move and how other
+     * DependentSeekBars are shifted out of the way.
+     *
+     * @return the solver currently in use
+     *
+     * @see #setConstraintSolver(ConstraintSolver)
+     */
+    ConstraintSolver getConstraintSolver() {
+        return solver;
+    }
+
+    /**
+     * Set the {@link ConstraintSolver} used to move the
+     * {@link DependentSeekBar}s in this manager. By default a
+     * {@link GreedyConstraintSolver} is used. The solver should not be changed
+     * while a DependentSeekBar is being dragged.
+     *
+     * @param constraintSolver the solver to use
+     *
+     * @see #getConstraintSolver()
+     */
+    void setConstraintSolver(ConstraintSolver constraintSolver) {
+        if (constraintSolver == null)
+            throw new NullPointerException();
+        solver = constraintSolver;
+        invalidateModel();
+    }
+
 }
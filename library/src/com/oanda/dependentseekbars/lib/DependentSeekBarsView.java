@@ -0,0 +1,467 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.Arrays;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * A single view which draws the seek bars of a
+ * {@link DependentSeekBarManager} as rows of tracks and thumbs on one Canvas,
+ * instead of one {@link DependentSeekBar} per seek bar. There is only one view
+ * to measure, lay out and draw however many seek bars are shown, and it does
+ * its own hit-testing, so dragging a thumb shifts the other seek bars in the
+ * manager as usual. After a solve only the rows of the seek bars which have
+ * moved are invalidated and drawn again.
+ *
+ * A row can also hold the thumbs of several seek bars on one track, such as
+ * ordered values on the same axis. Touching the row drags the closest thumb.
+ * The seek bars of a row should then have the same maximum.
+ *
+ * The rows show seek bars by id, usually added with
+ * {@link DependentSeekBarManager#addVirtualSeekBar(int, int)}. Drags in this
+ * view are solved on every touch event, on the UI thread, whether or not the
+ * manager coalesces frames or solves asynchronously. Changing the maximum or
+ * pinned state of a seek bar does not redraw its row by itself, call
+ * {@link #invalidate()} afterwards.
+ *
+ * @see DependentMultiThumbSeekBar
+ * @see DependentSeekBarManager#setOnConstraintsSolvedListener(DependentSeekBarManager.OnConstraintsSolvedListener)
+ */
+public class DependentSeekBarsView extends View {
+    private static final float DEFAULT_ROW_HEIGHT_DP = 48;
+    private static final float DEFAULT_THUMB_RADIUS_DP = 10;
+    private static final float DEFAULT_TRACK_WIDTH_DP = 4;
+    private static final int DEFAULT_PROGRESS_COLOR = 0xff33b5e5;
+
+    private DependentSeekBarManager mManager;
+    private boolean mAttached = false;
+    // The ids of the seek bars on each row
+    private int[][] mRows = new int[0][];
+    // The row of each id shown, or -1, indexed by id
+    private int[] mRowById = new int[0];
+    private int mRowHeight;
+    private int mThumbRadius;
+    private final Paint mTrackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mThumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mPinnedThumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Rect mClip = new Rect();
+    private int mDragId = -1;
+    private int mDragProgress;
+    private final Runnable mResumeDrag = new Runnable() {
+        @Override
+        public void run() {
+            solveDrag();
+        }
+    };
+
+    /**
+     * Creates a DependentSeekBarsView showing seek bars of the provided
+     * {@link DependentSeekBarManager}.
+     *
+     * @param context
+     * @param manager The {@link DependentSeekBarManager} holding the seek bars
+     *        shown by this view.
+     */
+    public DependentSeekBarsView(Context context,
+            DependentSeekBarManager manager) {
+        super(context);
+        init();
+        mManager = manager;
+    }
+
+    /*
+     * This contructor must be exposed separately from the constructor which
+     * takes in a {@link DependentSeekBarManager} as it is required by the
+     * android layout manager.
+     */
+    public DependentSeekBarsView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    private void init() {
+        final float density = getResources().getDisplayMetrics().density;
+        mRowHeight = (int) (DEFAULT_ROW_HEIGHT_DP * density + 0.5f);
+        mThumbRadius = (int) (DEFAULT_THUMB_RADIUS_DP * density + 0.5f);
+        final float trackWidth = DEFAULT_TRACK_WIDTH_DP * density;
+        mTrackPaint.setColor(Color.LTGRAY);
+        mTrackPaint.setStrokeWidth(trackWidth);
+        mTrackPaint.setStrokeCap(Paint.Cap.ROUND);
+        mProgressPaint.setColor(DEFAULT_PROGRESS_COLOR);
+        mProgressPaint.setStrokeWidth(trackWidth);
+        mProgressPaint.setStrokeCap(Paint.Cap.ROUND);
+        mThumbPaint.setColor(DEFAULT_PROGRESS_COLOR);
+        mPinnedThumbPaint.setColor(Color.GRAY);
+    }
+
+    /**
+     * Set the manager holding the seek bars shown by this view.
+     *
+     * @param manager
+     */
+    public void setManager(DependentSeekBarManager manager) {
+        if (manager == mManager) {
+            return;
+        }
+        cancelDrag();
+        if (mAttached && mManager != null) {
+            mManager.removeTrackView(this);
+        }
+        mManager = manager;
+        if (mAttached && mManager != null) {
+            mManager.addTrackView(this);
+        }
+        invalidate();
+    }
+
+    public DependentSeekBarManager getManager() {
+        return mManager;
+    }
+
+    /**
+     * Set the seek bars to show, one row each from top to bottom.
+     *
+     * @param ids the ids of the seek bars in the manager, each at most once
+     * @throws IllegalArgumentException if an id is negative or given twice
+     *
+     * @see DependentSeekBar#getSeekBarId()
+     * @see #setRows(int[][])
+     */
+    public void setSeekBarIds(int... ids) {
+        int[][] rows = new int[ids.length][];
+        for (int row = 0; row < ids.length; row++) {
+            rows[row] = new int[] { ids[row] };
+        }
+        setRows(rows);
+    }
+
+    /**
+     * Set the seek bars to show, with the thumbs of all seek bars in a row on
+     * one track.
+     *
+     * @param rows the ids of the seek bars on each row from top to bottom,
+     *        each at most once in all of the rows
+     * @throws IllegalArgumentException if an id is negative or given twice
+     */
+    public void setRows(int[]... rows) {
+        int size = 0;
+        for (int[] ids : rows) {
+            for (int id : ids) {
+                if (id < 0)
+                    throw new IllegalArgumentException("Negative id " + id);
+                size = Math.max(size, id + 1);
+            }
+        }
+        int[] rowById = new int[size];
+        Arrays.fill(rowById, -1);
+        int[][] copy = new int[rows.length][];
+        for (int row = 0; row < rows.length; row++) {
+            for (int id : rows[row]) {
+                if (rowById[id] >= 0)
+                    throw new IllegalArgumentException("Id " + id
+                            + " is shown twice");
+                rowById[id] = row;
+            }
+            copy[row] = rows[row].clone();
+        }
+        cancelDrag();
+        mRows = copy;
+        mRowById = rowById;
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * @return the number of rows shown
+     */
+    public int getRowCount() {
+        return mRows.length;
+    }
+
+    /**
+     * @param row
+     * @return the ids of the seek bars shown in row
+     */
+    public int[] getSeekBarIds(int row) {
+        return mRows[row].clone();
+    }
+
+    /**
+     * Set the height of each row.
+     *
+     * @param height the height in pixels
+     */
+    public void setRowHeight(int height) {
+        mRowHeight = Math.max(1, height);
+        requestLayout();
+        invalidate();
+    }
+
+    public int getRowHeight() {
+        return mRowHeight;
+    }
+
+    /**
+     * @param radius the radius of the thumbs in pixels
+     */
+    public void setThumbRadius(int radius) {
+        mThumbRadius = Math.max(0, radius);
+        invalidate();
+    }
+
+    public void setTrackColor(int color) {
+        mTrackPaint.setColor(color);
+        invalidate();
+    }
+
+    /**
+     * @param color the color of the track up to the thumb, and of the thumb
+     */
+    public void setProgressColor(int color) {
+        mProgressPaint.setColor(color);
+        mThumbPaint.setColor(color);
+        invalidate();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttached = true;
+        if (mManager != null) {
+            mManager.addTrackView(this);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelDrag();
+        mAttached = false;
+        if (mManager != null) {
+            mManager.removeTrackView(this);
+        }
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int height = getPaddingTop() + mRows.length * mRowHeight
+                + getPaddingBottom();
+        setMeasuredDimension(
+                getDefaultSize(getSuggestedMinimumWidth(), widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    /**
+     * Redraws the rows of the seek bars a solve has moved. Called by the
+     * manager once per solve.
+     */
+    void onSeekBarsMoved(Node[] moved) {
+        for (Node node : moved) {
+            final int id = node.getId();
+            if (id >= 0 && id < mRowById.length && mRowById[id] >= 0) {
+                invalidateRow(mRowById[id]);
+            }
+        }
+    }
+
+    private void invalidateRow(int row) {
+        final int top = getPaddingTop() + row * mRowHeight;
+        invalidate(0, top, getWidth(), top + mRowHeight);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mManager == null || mRows.length == 0) {
+            return;
+        }
+        // Only the rows which were invalidated have to be drawn again
+        if (!canvas.getClipBounds(mClip)) {
+            return;
+        }
+        final int first = Math.max(0, (mClip.top - getPaddingTop())
+                / mRowHeight);
+        final int last = Math.min(mRows.length - 1,
+                (mClip.bottom - 1 - getPaddingTop()) / mRowHeight);
+        for (int row = first; row <= last; row++) {
+            drawRow(canvas, row);
+        }
+    }
+
+    private void drawRow(Canvas canvas, int row) {
+        final int[] ids = mRows[row];
+        final float centerY = getPaddingTop() + row * mRowHeight + mRowHeight
+                / 2f;
+        canvas.drawLine(trackLeft(), centerY, trackRight(), centerY,
+                mTrackPaint);
+        // A single thumb fills the track up to it, several thumbs fill the
+        // track between the lowest and the highest one
+        float lowest = Float.MAX_VALUE;
+        float highest = -Float.MAX_VALUE;
+        for (int id : ids) {
+            final Node node = mManager.findNode(id);
+            if (node != null) {
+                final float x = thumbX(node.getProgress(), node.getMax());
+                lowest = Math.min(lowest, x);
+                highest = Math.max(highest, x);
+            }
+        }
+        if (highest < lowest) {
+            return;
+        }
+        canvas.drawLine(ids.length > 1 ? lowest : trackLeft(), centerY,
+                highest, centerY, mProgressPaint);
+        for (int id : ids) {
+            final Node node = mManager.findNode(id);
+            if (node != null) {
+                canvas.drawCircle(thumbX(node.getProgress(), node.getMax()),
+                        centerY, mThumbRadius, node.isPinned() ?
+                                mPinnedThumbPaint : mThumbPaint);
+            }
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isEnabled() || mManager == null) {
+            return false;
+        }
+        switch (event.getAction() & MotionEvent.ACTION_MASK) {
+        case MotionEvent.ACTION_DOWN:
+            final int row = rowAt((int) event.getY());
+            if (row < 0) {
+                return false;
+            }
+            final Node node = thumbAt(row, event.getX());
+            if (node == null) {
+                return false;
+            }
+            if (getParent() != null) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+            }
+            mDragId = node.getId();
+            node.startShiftEvent();
+            // Like a SeekBar, the thumb jumps to where the track was touched
+            dragTo(node, event.getX());
+            return true;
+        case MotionEvent.ACTION_MOVE:
+            if (mDragId >= 0) {
+                final Node dragged = mManager.findNode(mDragId);
+                if (dragged != null) {
+                    dragTo(dragged, event.getX());
+                }
+                return true;
+            }
+            break;
+        case MotionEvent.ACTION_UP:
+        case MotionEvent.ACTION_CANCEL:
+            if (mDragId >= 0) {
+                cancelDrag();
+                return true;
+            }
+            break;
+        }
+        return false;
+    }
+
+    /*
+     * The row at y, or -1 if there is none.
+     */
+    private int rowAt(int y) {
+        if (y < getPaddingTop()) {
+            return -1;
+        }
+        final int row = (y - getPaddingTop()) / mRowHeight;
+        return row < mRows.length ? row : -1;
+    }
+
+    /*
+     * The thumb in row closest to x, or null if none of its seek bars are in
+     * the manager. Of two thumbs at the same place the later one is taken
+     * when touching at or after them, so thumbs pushed to the maximum can
+     * still be dragged back.
+     */
+    private Node thumbAt(int row, float x) {
+        Node closest = null;
+        float closestDistance = Float.MAX_VALUE;
+        for (int id : mRows[row]) {
+            final Node node = mManager.findNode(id);
+            if (node == null) {
+                continue;
+            }
+            final float thumbX = thumbX(node.getProgress(), node.getMax());
+            final float distance = Math.abs(x - thumbX);
+            if (distance < closestDistance
+                    || (distance == closestDistance && x >= thumbX)) {
+                closest = node;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    private void dragTo(Node node, float x) {
+        mDragProgress = progressAt(x, node.getMax());
+        solveDrag();
+    }
+
+    private void solveDrag() {
+        removeCallbacks(mResumeDrag);
+        final Node node = mDragId >= 0 ? mManager.findNode(mDragId) : null;
+        // If the solver ran out of budget before reaching the dragged
+        // progress, carry on from where it stopped on the next pass of the
+        // event loop
+        if (node != null && node.drag(mDragProgress)) {
+            post(mResumeDrag);
+        }
+    }
+
+    /*
+     * Ends the shift event of the thumb being dragged, if there is one.
+     */
+    private void cancelDrag() {
+        removeCallbacks(mResumeDrag);
+        if (mDragId < 0) {
+            return;
+        }
+        final Node node = mManager != null ? mManager.findNode(mDragId)
+                : null;
+        mDragId = -1;
+        if (node != null) {
+            node.endShiftEvent();
+        }
+    }
+
+    private int trackLeft() {
+        return getPaddingLeft() + mThumbRadius;
+    }
+
+    private int trackRight() {
+        return Math.max(trackLeft(), getWidth() - getPaddingRight()
+                - mThumbRadius);
+    }
+
+    private float thumbX(int progress, int max) {
+        return trackLeft() + (max > 0 ? (float) (trackRight() - trackLeft())
+                * progress / max : 0);
+    }
+
+    private int progressAt(float x, int max) {
+        final int available = trackRight() - trackLeft();
+        if (available <= 0) {
+            return 0;
+        }
+        final float position = Math.max(0, Math.min(available, x - trackLeft()));
+        return Math.round(position * max / available);
+    }
+}
@@ -0,0 +1,49 @@
+package com.oanda.dependentseekbars.lib;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * Growable list of dependencies, stored as parallel arrays so that solvers can
+ * collect and walk them without allocating per edge. Each edge goes from a
+ * node being moved to a node it depends on, with the gap the dependency
+ * requires between their progresses: a greater node has to be at least
+ * from + gap, a smaller node at most from - gap.
+ */
+final class EdgeList {
+    Node[] from = new Node[8];
+    Node[] to = new Node[8];
+    int[] gap = new int[8];
+    int size = 0;
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            from[i] = null;
+            to[i] = null;
+        }
+        size = 0;
+    }
+
+    void add(Node fromNode, Node toNode, int edgeGap) {
+        if (size == from.length) {
+            Node[] newFrom = new Node[size * 2];
+            Node[] newTo = new Node[size * 2];
+            int[] newGap = new int[size * 2];
+            System.arraycopy(from, 0, newFrom, 0, size);
+            System.arraycopy(to, 0, newTo, 0, size);
+            System.arraycopy(gap, 0, newGap, 0, size);
+            from = newFrom;
+            to = newTo;
+            gap = newGap;
+        }
+        from[size] = fromNode;
+        to[size] = toNode;
+        gap[size] = edgeGap;
+        size++;
+    }
+
+    void addAll(EdgeList edges) {
+        for (int i = 0; i < edges.size; i++) {
+            add(edges.from[i], edges.to[i], edges.gap[i]);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs the solves of the {@link DependentSeekBar}s being dragged at most once
+ * per display frame. Touch events can arrive several times per frame, and
+ * only the latest position of each thumb has to be solved before the frame is
+ * drawn. Other work which should happen at most once per frame, such as
+ * applying progress posted from other threads, can be scheduled as a task.
+ *
+ * On API 16 and above the solves run from a {@link Choreographer} frame
+ * callback, which runs before the frame is laid out and drawn. On older
+ * versions they are posted to the UI thread once per frame interval instead.
+ *
+ * @see DependentSeekBarManager#setFrameCoalescing(boolean)
+ */
+final class FrameScheduler {
+    private static final long FRAME_INTERVAL_MILLIS = 16;
+
+    private final ArrayList<DependentSeekBar> pending = new ArrayList<DependentSeekBar>();
+    private final ArrayList<DependentSeekBar> running = new ArrayList<DependentSeekBar>();
+    private final ArrayList<Runnable> pendingTasks = new ArrayList<Runnable>();
+    private final ArrayList<Runnable> runningTasks = new ArrayList<Runnable>();
+    private boolean scheduled = false;
+    private VsyncCallback vsyncCallback;
+    private Handler handler;
+
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            doFrame();
+        }
+    };
+
+    /**
+     * Solve the pending progress of seekBar on the next frame.
+     */
+    void schedule(DependentSeekBar seekBar) {
+        if (!pending.contains(seekBar)) {
+            pending.add(seekBar);
+        }
+        if (!scheduled) {
+            scheduled = true;
+            postFrame();
+        }
+    }
+
+    /**
+     * Run task on the next frame, after the pending progress of the seek bars
+     * has been solved. Must be called on the UI thread.
+     */
+    void schedule(Runnable task) {
+        if (!pendingTasks.contains(task)) {
+            pendingTasks.add(task);
+        }
+        if (!scheduled) {
+            scheduled = true;
+            postFrame();
+        }
+    }
+
+    /**
+     * Solve every pending progress and run every task now rather than on the
+     * next frame.
+     */
+    void flush() {
+        if (scheduled) {
+            cancelFrame();
+            doFrame();
+        }
+    }
+
+    private void doFrame() {
+        scheduled = false;
+        // Seek bars scheduled while the frame runs wait for the next one
+        running.addAll(pending);
+        pending.clear();
+        runningTasks.addAll(pendingTasks);
+        pendingTasks.clear();
+        for (DependentSeekBar seekBar : running) {
+            seekBar.applyPendingProgress();
+        }
+        running.clear();
+        for (Runnable task : runningTasks) {
+            task.run();
+        }
+        runningTasks.clear();
+    }
+
+    private void postFrame() {
+        if (Build.VERSION.SDK_INT >= 16) {
+            if (vsyncCallback == null) {
+                vsyncCallback = new VsyncCallback(frame);
+            }
+            vsyncCallback.post();
+        } else {
+            getHandler().postDelayed(frame, FRAME_INTERVAL_MILLIS);
+        }
+    }
+
+    private void cancelFrame() {
+        if (vsyncCallback != null) {
+            vsyncCallback.cancel();
+        }
+        if (handler != null) {
+            handler.removeCallbacks(frame);
+        }
+    }
+
+    private Handler getHandler() {
+        if (handler == null) {
+            handler = new Handler(Looper.getMainLooper());
+        }
+        return handler;
+    }
+
+    /*
+     * Kept in its own class so that Choreographer is never loaded on versions
+     * which don't have it.
+     */
+    @TargetApi(16)
+    private static final class VsyncCallback implements
+            Choreographer.FrameCallback {
+        private final Runnable frame;
+
+        VsyncCallback(Runnable frame) {
+            this.frame = frame;
+        }
+
+        void post() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void cancel() {
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frame.run();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * Immutable copy of the dependencies of one connected component, stored as
+ * arrays indexed by node so that it can be solved away from the UI thread.
+ * The progress of the nodes is not part of the snapshot and is passed to
+ * {@link #solve(int[], int[], int, int, boolean, AtomicInteger, int)}
+ * separately, so one snapshot can be reused until the model version changes.
+ *
+ * Only less than, greater than and lane dependencies are copied. Components
+ * with equality groups, sum constraints or {@link SeekBarGroup}s are marked
+ * as unsupported and have to be solved on the UI thread.
+ */
+final class GraphSnapshot {
+    // How many nodes are visited between checks for a newer solve
+    private static final int CANCEL_CHECK_INTERVAL = 64;
+
+    private final int modelVersion;
+    private final boolean supported;
+    private final Node[] nodes;
+    private final HashMap<Node, Integer> indices;
+    private final int[] maximum;
+    private final boolean[] pinned;
+    // Edges to the greater and the smaller nodes, with the gap each one
+    // requires. The edges of node i are at [start[i], start[i + 1])
+    private final int[] childStart;
+    private final int[] childIndex;
+    private final int[] childGap;
+    private final int[] parentStart;
+    private final int[] parentIndex;
+    private final int[] parentGap;
+    // Topological order, smaller nodes first
+    private final int[] order;
+
+    private GraphSnapshot(List<Node> component, int modelVersion) {
+        this.modelVersion = modelVersion;
+        final int count = component.size();
+        nodes = component.toArray(new Node[count]);
+        indices = new HashMap<Node, Integer>(count * 2);
+        maximum = new int[count];
+        pinned = new boolean[count];
+        boolean supported = true;
+        for (int i = 0; i < count; i++) {
+            final Node node = nodes[i];
+            indices.put(node, i);
+            maximum[i] = node.getMax() - node.getExtent();
+            pinned[i] = node.isPinned();
+            supported &= node.getEqualityGroup().size() == 1
+                    && node.getSumConstraint() == null
+                    && node.getGroup() == null;
+        }
+        this.supported = supported;
+
+        final EdgeList children = new EdgeList();
+        final EdgeList parents = new EdgeList();
+        childStart = new int[count + 1];
+        parentStart = new int[count + 1];
+        for (int i = 0; i < count; i++) {
+            childStart[i] = children.size;
+            parentStart[i] = parents.size;
+            nodes[i].collectEdges(true, null, children);
+            nodes[i].collectEdges(false, null, parents);
+        }
+        childStart[count] = children.size;
+        parentStart[count] = parents.size;
+        childIndex = new int[children.size];
+        childGap = new int[children.size];
+        for (int i = 0; i < children.size; i++) {
+            childIndex[i] = indices.get(children.to[i]);
+            childGap[i] = children.gap[i];
+        }
+        parentIndex = new int[parents.size];
+        parentGap = new int[parents.size];
+        for (int i = 0; i < parents.size; i++) {
+            parentIndex[i] = indices.get(parents.to[i]);
+            parentGap[i] = parents.gap[i];
+        }
+        order = sort();
+    }
+
+    /**
+     * Copies the dependencies of component. Must be called on the UI thread.
+     *
+     * @param component the nodes of one connected component
+     * @param modelVersion the model version the component was read at
+     * @return the snapshot
+     */
+    static GraphSnapshot create(List<Node> component, int modelVersion) {
+        return new GraphSnapshot(component, modelVersion);
+    }
+
+    int getModelVersion() {
+        return modelVersion;
+    }
+
+    /**
+     * @return false iff the component has dependencies which the snapshot
+     *         cannot solve
+     */
+    boolean isSupported() {
+        return supported;
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    Node getNode(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * @return the index of node, or -1 if it is not in the snapshot
+     */
+    int indexOf(Node node) {
+        final Integer index = indices.get(node);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Moves the source node towards target, pushing the nodes which are in
+     * the way as little as possible, and lets the nodes on the other side
+     * move back towards their preferred progress. This is the same result
+     * {@link MinimalDisplacementSolver} gives for a component without
+     * equality groups, sums or groups.
+     *
+     * @param progress the progress of every node when the solve was requested
+     * @param preferred the progress every node would like to return to. For
+     *        nodes which are not in a shift event this is their progress
+     * @param source the index of the node being moved
+     * @param target the progress source was dragged to
+     * @param shifting true iff other nodes may be pushed
+     * @param generation the counter of solve requests
+     * @param expected the value of generation this solve was requested at
+     * @return the new progress of every node, or null if a newer solve was
+     *         requested in the meantime
+     */
+    int[] solve(int[] progress, int[] preferred, int source, int target,
+            boolean shifting, AtomicInteger generation, int expected) {
+        final int count = nodes.length;
+        final int[] next = progress.clone();
+        final boolean right = target > progress[source];
+        if (target == progress[source] || pinned[source]) {
+            return next;
+        }
+        if (!shifting) {
+            next[source] = clamp(source, target, progress, right);
+            return next;
+        }
+
+        // 1 for the nodes greater than source, 2 for the smaller ones
+        final byte[] side = new byte[count];
+        mark(source, side, (byte) 1, childStart, childIndex);
+        mark(source, side, (byte) 2, parentStart, parentIndex);
+
+        // The furthest each node on the pushed side can go, which is limited
+        // by the maximums and pinned nodes behind it
+        final int[] limit = new int[count];
+        for (int k = 0; k < count; k++) {
+            if (k % CANCEL_CHECK_INTERVAL == 0
+                    && generation.get() != expected) {
+                return null;
+            }
+            final int v = order[right ? count - 1 - k : k];
+            if (v != source && side[v] != (right ? 1 : 2)) {
+                continue;
+            }
+            if (v != source && pinned[v]) {
+                limit[v] = progress[v];
+            } else if (right) {
+                int bound = maximum[v];
+                for (int e = childStart[v]; e < childStart[v + 1]; e++) {
+                    bound = Math.min(bound, limit[childIndex[e]] - childGap[e]);
+                }
+                limit[v] = bound;
+            } else {
+                int bound = 0;
+                for (int e = parentStart[v]; e < parentStart[v + 1]; e++) {
+                    bound = Math.max(bound, limit[parentIndex[e]]
+                            + parentGap[e]);
+                }
+                limit[v] = bound;
+            }
+        }
+        next[source] = right ? Math.max(progress[source],
+                Math.min(target, limit[source])) : Math.min(progress[source],
+                Math.max(target, limit[source]));
+
+        // The pushed side goes first, then the other side can move back
+        // towards its preferred progress into the room that was made
+        if (!push(right, true, next, progress, preferred, side, generation,
+                expected)) {
+            return null;
+        }
+        if (!push(!right, false, next, progress, preferred, side,
+                generation, expected)) {
+            return null;
+        }
+        return next;
+    }
+
+    /*
+     * Moves the nodes greater than the source when towardsChildren, the
+     * smaller ones otherwise. Pushed nodes only move as far as their
+     * neighbours require, the others move back towards their preferred
+     * progress as far as their neighbours allow.
+     */
+    private boolean push(boolean towardsChildren, boolean pushed, int[] next,
+            int[] progress, int[] preferred, byte[] side,
+            AtomicInteger generation, int expected) {
+        final int count = nodes.length;
+        final byte marked = towardsChildren ? (byte) 1 : (byte) 2;
+        for (int k = 0; k < count; k++) {
+            if (k % CANCEL_CHECK_INTERVAL == 0
+                    && generation.get() != expected) {
+                return false;
+            }
+            final int v = order[towardsChildren ? k : count - 1 - k];
+            if (side[v] != marked || pinned[v]) {
+                continue;
+            }
+            if (towardsChildren) {
+                int bound = pushed ? progress[v] : Math.min(progress[v],
+                        preferred[v]);
+                for (int e = parentStart[v]; e < parentStart[v + 1]; e++) {
+                    bound = Math.max(bound, next[parentIndex[e]]
+                            + parentGap[e]);
+                }
+                next[v] = bound;
+            } else {
+                int bound = pushed ? progress[v] : Math.max(progress[v],
+                        preferred[v]);
+                for (int e = childStart[v]; e < childStart[v + 1]; e++) {
+                    bound = Math.min(bound, next[childIndex[e]] - childGap[e]);
+                }
+                next[v] = bound;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * The furthest source can move towards target without moving anything
+     * else.
+     */
+    private int clamp(int source, int target, int[] progress, boolean right) {
+        if (right) {
+            int bound = Math.min(target, maximum[source]);
+            for (int e = childStart[source]; e < childStart[source + 1]; e++) {
+                bound = Math.min(bound, progress[childIndex[e]] - childGap[e]);
+            }
+            return Math.max(progress[source], bound);
+        }
+        int bound = Math.max(target, 0);
+        for (int e = parentStart[source]; e < parentStart[source + 1]; e++) {
+            bound = Math.max(bound, progress[parentIndex[e]] + parentGap[e]);
+        }
+        return Math.min(progress[source], bound);
+    }
+
+    private void mark(int source, byte[] side, byte value, int[] start,
+            int[] index) {
+        final int[] stack = new int[nodes.length];
+        int size = 0;
+        stack[size++] = source;
+        while (size > 0) {
+            final int v = stack[--size];
+            for (int e = start[v]; e < start[v + 1]; e++) {
+                final int w = index[e];
+                if (side[w] == 0 && w != source) {
+                    side[w] = value;
+                    stack[size++] = w;
+                }
+            }
+        }
+    }
+
+    private int[] sort() {
+        final int count = nodes.length;
+        final int[] degree = new int[count];
+        for (int e = 0; e < childIndex.length; e++) {
+            degree[childIndex[e]]++;
+        }
+        final int[] sorted = new int[count];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < count; i++) {
+            if (degree[i] == 0) {
+                sorted[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            final int v = sorted[head++];
+            for (int e = childStart[v]; e < childStart[v + 1]; e++) {
+                if (--degree[childIndex[e]] == 0) {
+                    sorted[tail++] = childIndex[e];
+                }
+            }
+        }
+        return sorted;
+    }
+}
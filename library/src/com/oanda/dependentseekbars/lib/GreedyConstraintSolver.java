@@ -0,0 +1,512 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+import com.oanda.dependentseekbars.lib.DependentSeekBar.Direction;
+
+/**
+ * Default {@link ConstraintSolver}. When a {@link DependentSeekBar} conflicts
+ * with the DependentSeekBars it depends on, each of them is recursively asked
+ * to move exactly as far as necessary, one at a time.
+ *
+ * During a shift event the results of the solver are kept in a
+ * {@link ShiftCache}, so moving the same DependentSeekBar over the same
+ * progress values again replays the stored moves instead of solving them from
+ * scratch. The cache is dropped when the shift event ends or the
+ * dependencies change. Instances must only be used from the UI thread.
+ */
+class GreedyConstraintSolver implements ConstraintSolver {
+    private ShiftCache mCache;
+    private int mDepth = 0;
+    // The bar whose move is currently asking other bars to move, which
+    // decides the group a pushed bar moves with
+    private Node mDriver;
+
+    /**
+     * Determines if the slider can move the given displacement amount and if
+     * not, the furthest it can move. The return value is calculated by
+     * asking dependent sliders whether the desired value will conflict with
+     * dependencies and asking the dependent sliders to move as far as
+     * necessary.
+     *
+     * @param node the node of the seek bar being moved
+     * @param displacement the distance the seek bar is being requested to move
+     *        right
+     * @param oldProgress the current progress of the seek bar
+     * @return 0 when it cannot move. A positive integer representing the
+     *         maximum amount it is allowed to move.
+     */
+    @Override
+    public int canMove(Node node, int displacement, int oldProgress,
+            boolean checkOnly) {
+        if (mDepth > 0 || !cacheUsableFor(node)
+                || !node.getManager().isShiftingAllowed()) {
+            return computeMove(node, displacement, oldProgress, checkOnly);
+        }
+
+        final int kind = checkOnly ? ShiftCache.CHECK : ShiftCache.MOVE;
+        ShiftCache.Entry entry = mCache.get(kind, oldProgress, displacement);
+        if (entry != null && entry.apply(checkOnly)) {
+            return entry.result;
+        }
+        final SolveBudget budget = node.getManager().getSolveBudget();
+        mCache.startRecording();
+        int result = computeMove(node, displacement, oldProgress, checkOnly);
+        // A result cut short by the budget is not what the solver would do
+        // given enough time, so it is not stored
+        mCache.finishRecording(kind, oldProgress, displacement, result,
+                budget.isExhausted());
+        return result;
+    }
+
+    private int computeMove(Node node, int displacement, int oldProgress,
+            boolean checkOnly) {
+        mDepth++;
+        try {
+            return move(node, displacement, oldProgress, checkOnly);
+        } finally {
+            mDepth--;
+        }
+    }
+
+    private int move(Node seekNode, int displacement, int oldProgress,
+            boolean checkOnly) {
+        final SumConstraint sum = seekNode.getSumConstraint();
+        if (sum != null) {
+            return moveInSum(sum, seekNode, displacement, oldProgress,
+                    checkOnly);
+        }
+        // A bar pushed from outside of its group takes the whole group along
+        final SeekBarGroup unit = mDriver != null ? SeekBarGroup
+                .outermostExcluding(seekNode, mDriver) : null;
+        return moveUnit(seekNode, unit, displacement, oldProgress, checkOnly);
+    }
+
+    /*
+     * Moves seekNode along with the rest of its unit, which is group if it is
+     * not null and seekNode's equality group otherwise. Every member of the
+     * unit keeps its distance to seekNode, so the limits and conflicts of
+     * each of them apply. seekNode itself is moved by the caller.
+     */
+    private int moveUnit(Node seekNode, SeekBarGroup group, int displacement,
+            int oldProgress, boolean checkOnly) {
+        final ArrayList<Node> members = group != null ? group.getMembers()
+                : seekNode.getEqualityGroup();
+        for (Node member : members) {
+            if (member.isPinned()) {
+                return 0;
+            }
+        }
+        // Once the budget has run out, every bar that has not been visited
+        // behaves as if it were pinned
+        if (!seekNode.getManager().getSolveBudget().visit()) {
+            return 0;
+        }
+        // Never ask for more than the seek bars' own ranges allow (less the
+        // extent of a DependentRangeSeekBar), so that a
+        // bar pushed towards its limit moves as far as it can rather than not
+        // at all
+        if (group != null) {
+            if (displacement > 0) {
+                displacement = Math.max(0,
+                        Math.min(displacement, group.getRightSlack()));
+            } else {
+                displacement = Math.min(0,
+                        Math.max(displacement, -group.getLowerProgress()));
+            }
+        } else {
+            for (Node member : members) {
+                final int progress = oldProgress + shift(member, seekNode,
+                        null);
+                final int max = member.getMax() - member.getExtent();
+                if (progress + displacement > max) {
+                    displacement = Math.max(0, max - progress);
+                } else if (progress + displacement < 0) {
+                    displacement = Math.min(0, -progress);
+                }
+            }
+        }
+        if (displacement == 0) {
+            return 0;
+        }
+        final boolean usePreferredProgress = seekNode.inShiftEvent();
+        int desiredProgress = oldProgress + displacement;
+        // Creates a list of all dependent sliders which conflict with the
+        // current slider's desired progress. Each conflict has to end up on
+        // the far side of seekNode's progress + its entry in offsets, which
+        // accounts for the offset of the unit member it is attached to and
+        // the gap the dependency requires. A group only has to look at the
+        // dependencies leaving it
+        final boolean towardsChildren = displacement > 0;
+        EdgeList edges;
+        if (group != null) {
+            edges = group.getBoundary(towardsChildren);
+        } else {
+            edges = new EdgeList();
+            for (Node member : members) {
+                member.collectEdges(towardsChildren, null, edges);
+            }
+        }
+        ArrayList<Node> conflicting = new ArrayList<Node>();
+        ArrayList<Integer> offsets = new ArrayList<Integer>();
+        for (int i = 0; i < edges.size; i++) {
+            final int shift = shift(edges.from[i], seekNode, group);
+            addConflict(edges.to[i], towardsChildren ? shift + edges.gap[i]
+                    : shift - edges.gap[i], desiredProgress, displacement,
+                    conflicting, offsets, usePreferredProgress, checkOnly);
+        }
+
+        /*
+         * Decides based on the contents of conflictingParents the number to
+         * return. If shifting is allowed and the current slider's desired
+         * progress will conflict with 1 or more other sliders, those slider's
+         * will be asked to move and the values which they return will be used
+         * to determine the allowed movement for the current slider.When
+         * shifting is disabled, the current slider can only move as much as the
+         * next min. dependent slider.
+         */
+        int result = 0;
+        if (conflicting.size() == 0 && desiredProgress <= seekNode.getMax()
+                && desiredProgress >= 0) {
+            result = displacement;
+        } else if (conflicting.size() != 0) {
+            int allowedDisplacement = displacement;
+            final int directionFactor = displacement < 0 ? -1 : 1;
+
+            for (int i = 0; i < conflicting.size(); i++) {
+                final Node conflict = conflicting.get(i);
+                final int offset = offsets.get(i);
+                // If the bar has been updated in the meantime, then we may not
+                // need it to move
+                final int conflictProgress = progressOf(conflict);
+                if ((directionFactor < 0 && conflictProgress <= oldProgress + offset + allowedDisplacement) ||
+                        (directionFactor > 0 && conflictProgress >= oldProgress + offset + allowedDisplacement)) {
+                    continue;
+                }
+
+                final int distance = Math.abs(desiredProgress + offset - conflictProgress);
+                int temp = displacement - (directionFactor * distance);
+
+                // Determines how much the current slider can move if the child
+                // sliders are expected to move as far as necessary.
+                if (seekNode.getManager().isShiftingAllowed()
+                        && !conflict.isPinned()) {
+                    final Node driver = mDriver;
+                    mDriver = seekNode;
+                    temp += conflict.canMove(directionFactor * distance,
+                            checkOnly);
+                    mDriver = driver;
+                }
+
+                allowedDisplacement = directionFactor < 0 ?
+                                      Math.max(allowedDisplacement, temp) :
+                                      Math.min(allowedDisplacement, temp);
+            }
+            result = allowedDisplacement;
+        }
+
+        // seekNode itself is moved by the caller, the rest of its unit is
+        // moved here
+        if (result != 0 && members.size() > 1) {
+            if (group != null) {
+                group.movedTemporarily |= checkOnly;
+                group.joinedShiftEvent |= usePreferredProgress;
+            }
+            for (Node member : members) {
+                if (member == seekNode) {
+                    continue;
+                }
+                final int progress = group != null ? progressOf(member)
+                        + result : oldProgress + result
+                        + shift(member, seekNode, null);
+                recordWrite(member);
+                if (usePreferredProgress) {
+                    member.joinShiftEvent();
+                }
+                member.applyProgress(progress, checkOnly);
+            }
+        }
+        return result;
+    }
+
+    /*
+     * The distance between member and seekNode, which stays fixed while they
+     * move as one unit. Within an equality group it is given by the Equal
+     * dependencies, within a group it is whatever it currently is.
+     */
+    private int shift(Node member, Node seekNode, SeekBarGroup group) {
+        if (group != null) {
+            return progressOf(member) - progressOf(seekNode);
+        }
+        return member.getEqualityOffset() - seekNode.getEqualityOffset();
+    }
+
+    /**
+     * Moves the group as one unit, asking the bars around it to move out of
+     * its way.
+     */
+    @Override
+    public int canMoveGroup(SeekBarGroup group, int displacement,
+            boolean checkOnly) {
+        final Node node = group.getRepresentative();
+        final Node driver = mDriver;
+        mDriver = null;
+        mDepth++;
+        try {
+            final int result = moveUnit(node, group, displacement,
+                    node.getOldProgress(), checkOnly);
+            if (result != 0) {
+                node.applyProgress(node.getProgress() + result, checkOnly);
+            }
+            return result;
+        } finally {
+            mDepth--;
+            mDriver = driver;
+        }
+    }
+
+    /*
+     * Adds node to conflicting if it is in the way of the moved bar going to
+     * desiredProgress, where node has to stay on the far side of
+     * desiredProgress + offset, and prepares it to be asked to move.
+     */
+    private void addConflict(Node node, int offset, int desiredProgress,
+            int displacement, ArrayList<Node> conflicting,
+            ArrayList<Integer> offsets, boolean usePreferredProgress,
+            boolean checkOnly) {
+        final int progress = progressOf(node);
+        if ((displacement < 0 && progress <= desiredProgress + offset)
+                || (displacement > 0 && progress >= desiredProgress + offset)) {
+            return;
+        }
+        conflicting.add(node);
+        offsets.add(offset);
+        if (node.isPinned()) {
+            // A pinned bar is a wall, it is never asked to move
+            return;
+        }
+        recordWrite(node);
+        if (checkOnly) {
+            node.useTempProgress();
+        }
+        if (usePreferredProgress) {
+            node.joinShiftEvent();
+        }
+    }
+
+    /*
+     * The members of a sum constraint have no other dependencies, so the
+     * constraint settles the whole move by itself.
+     */
+    private int moveInSum(SumConstraint sum, Node node, int displacement,
+            int oldProgress, boolean checkOnly) {
+        if (node.isPinned() || !node.getManager().isShiftingAllowed()
+                || !node.getManager().getSolveBudget().visit()) {
+            return 0;
+        }
+        for (Node member : sum.getMembers()) {
+            progressOf(member);
+            recordWrite(member);
+        }
+        return sum.move(node, displacement, oldProgress, node.inShiftEvent(),
+                checkOnly);
+    }
+
+    /**
+     * Attempt to move to the preferred progress value if possible and then
+     * tell all seek bars which depend on this seek bar to check if they can
+     * move to their preferred progress values.
+     *
+     * This method should NEVER be called when manager.isShiftingAllowed() ==
+     * true, as it may end up moving bars which are already in their preferred
+     * locations.
+     *
+     * @param node the node of the seek bar to move back to its preferred
+     *        progress
+     * @param direction the direction of the initially moved seek bar
+     */
+    @Override
+    public void checkPreferredProgress(Node node, Direction direction) {
+        if (mDepth > 0 || !cacheUsableFor(node)) {
+            computePreferredProgress(node, direction);
+            return;
+        }
+
+        final int oldProgress = node.getOldProgress();
+        final int amount = direction == Direction.RIGHT ? 1 : -1;
+        ShiftCache.Entry entry = mCache.get(ShiftCache.PREFERRED, oldProgress,
+                amount);
+        if (entry != null && entry.apply(false)) {
+            return;
+        }
+        final SolveBudget budget = node.getManager().getSolveBudget();
+        mCache.startRecording();
+        computePreferredProgress(node, direction);
+        mCache.finishRecording(ShiftCache.PREFERRED, oldProgress, amount, 0,
+                budget.isExhausted());
+    }
+
+    private void computePreferredProgress(Node node, Direction direction) {
+        mDepth++;
+        try {
+            restorePreferredProgress(node, direction);
+        } finally {
+            mDepth--;
+        }
+    }
+
+    private void restorePreferredProgress(Node seekNode,
+            final Direction direction) {
+        /*This method should NEVER be called when manager.isShiftingAllowed() is
+        true, as it may end up moving bars which are already in their preferred
+        locations. */
+        assert(seekNode.getManager().isShiftingAllowed() == false);
+
+        // Once the budget has run out, the bars which have not been visited
+        // stay where they were pushed until the next event
+        if (!seekNode.getManager().getSolveBudget().visit()) {
+            return;
+        }
+        recordWrite(seekNode);
+        final int oldProgress = seekNode.getOldProgress();
+        final int preferredProgress = seekNode.getPreferredProgress();
+        if (seekNode.inShiftEvent() && preferredProgress != oldProgress) {
+            seekNode.canMove(preferredProgress - oldProgress, false);
+        }
+
+        /* Sort the affected nodes so that they are in ascending order if
+        parents and descending order if children. Since we do not allow
+        shifting when attempting to move to the preferred progress,
+        if we are allowing bars to move left and we try to move the bar with
+        the largest progress value first, it will not be allowed to move and
+        we will never ask it to move again, resulting in it never moving.
+        Instead, we can make sure that we move the bars with the smallest
+        progress to the left first so that they are out of the way when the
+        bars with larger progress try and move left. (Vice-versa for right) */
+        final ArrayList<Node> group = seekNode.getEqualityGroup();
+        ArrayList<Node> affectedNodes =
+                direction == Direction.RIGHT ? seekNode.getParents() :
+                seekNode.getChildren();
+        if (group.size() > 1 || seekNode.getLaneNext() != null
+                || seekNode.getLanePrevious() != null) {
+            affectedNodes = new ArrayList<Node>();
+            for (Node member : group) {
+                affectedNodes.addAll(direction == Direction.RIGHT ?
+                                     member.getParents() :
+                                     member.getChildren());
+                final Node neighbour = direction == Direction.RIGHT ?
+                                       member.getLanePrevious() :
+                                       member.getLaneNext();
+                if (neighbour != null) {
+                    affectedNodes.add(neighbour);
+                }
+            }
+        }
+        restoreNeighbours(seekNode, affectedNodes, direction);
+    }
+
+    /*
+     * A group which was pushed out of the way returns to its preferred
+     * progress as a whole, and then lets the bars around it do the same.
+     */
+    private void restoreGroup(SeekBarGroup group, Node node,
+            Direction direction) {
+        final int oldProgress = node.getOldProgress();
+        final int preferredProgress = node.getPreferredProgress();
+        if (node.inShiftEvent() && preferredProgress != oldProgress) {
+            for (Node member : group.getMembers()) {
+                progressOf(member);
+                recordWrite(member);
+            }
+            final int result = moveUnit(node, group, preferredProgress
+                    - oldProgress, oldProgress, false);
+            if (result != 0) {
+                node.applyProgress(oldProgress + result, false);
+            }
+        }
+        final EdgeList boundary = group
+                .getBoundary(direction == Direction.LEFT);
+        ArrayList<Node> affectedNodes = new ArrayList<Node>(boundary.size);
+        for (int i = 0; i < boundary.size; i++) {
+            affectedNodes.add(boundary.to[i]);
+        }
+        restoreNeighbours(node, affectedNodes, direction);
+    }
+
+    private void restoreNeighbours(Node from, ArrayList<Node> affectedNodes,
+            final Direction direction) {
+        // Sorting looks at every affected node, so each of them is charged
+        final SolveBudget budget = from.getManager().getSolveBudget();
+        for (int i = 0; i < affectedNodes.size(); i++) {
+            if (!budget.visit()) {
+                return;
+            }
+        }
+        Comparator<Node> comparator = new Comparator<Node>() {
+            @Override
+            public int compare(Node lhs, Node rhs) {
+                int result = Integer
+                        .signum(progressOf(lhs) - progressOf(rhs));
+                return direction == Direction.RIGHT ? result * -1 : result;
+            }
+        };
+        Collections.sort(affectedNodes, comparator);
+        for (Node node : affectedNodes) {
+            // Bars in a group which did not contain the moved bar were
+            // pushed along with their group
+            final SeekBarGroup group = SeekBarGroup.outermostExcluding(node,
+                    from);
+            if (group != null) {
+                restoreGroup(group, node, direction);
+            } else {
+                checkPreferredProgress(node, direction);
+            }
+        }
+    }
+
+    /**
+     * Starts a {@link ShiftCache} for the shift event.
+     */
+    @Override
+    public void startShiftEvent(Node node) {
+        mCache = new ShiftCache(node, node.getManager().getModelVersion());
+    }
+
+    @Override
+    public void endShiftEvent(Node node) {
+        if (mCache != null && mCache.root == node) {
+            mCache = null;
+        }
+    }
+
+    /*
+     * Checks whether the cache can be used for a call on node made from
+     * outside of the solver, dropping it if it no longer applies.
+     */
+    private boolean cacheUsableFor(Node node) {
+        if (mCache == null) {
+            return false;
+        }
+        if (mCache.modelVersion != node.getManager().getModelVersion()) {
+            mCache = null;
+            return false;
+        }
+        return mCache.root == node;
+    }
+
+    private int progressOf(Node node) {
+        if (mCache != null && mCache.isRecording()) {
+            mCache.read(node);
+        }
+        return node.getProgress();
+    }
+
+    private void recordWrite(Node node) {
+        if (mCache != null && mCache.isRecording()) {
+            mCache.write(node);
+        }
+    }
+}
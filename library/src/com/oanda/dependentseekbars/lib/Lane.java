@@ -0,0 +1,92 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * A lane of tasks which must not overlap. Each task is a
+ * {@link DependentSeekBar} whose progress is the start of the task, and which
+ * lasts for a fixed duration. No two tasks in a lane overlap, so without
+ * needing an edge between every pair of tasks, each task is effectively less
+ * than the next task in the lane by at least its duration.
+ *
+ * Tasks can never pass each other, so the order of the tasks in a lane only
+ * changes when tasks are added or removed. The lane keeps its tasks in a list
+ * sorted by start, which finds the tasks overlapping a range by binary search,
+ * and links each task to its neighbours so the solvers find the tasks a moved
+ * task may push in constant time.
+ *
+ * @see DependentSeekBarManager#createLane()
+ */
+public final class Lane {
+    private final ArrayList<Node> tasks = new ArrayList<Node>();
+
+    Lane() {
+    }
+
+    /**
+     * @return the number of tasks in the lane
+     */
+    public int getTaskCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @param index
+     * @return the task with the index-th earliest start, or null if it is
+     *         not bound to a view
+     * @see DependentSeekBarManager#bindSeekBar(DependentSeekBar, int)
+     */
+    public DependentSeekBar getTask(int index) {
+        return tasks.get(index).getSeekBar();
+    }
+
+    /**
+     * Get the tasks which overlap the range [from, to). Runs in O(log n + k)
+     * for k overlapping tasks.
+     * @param from
+     * @param to
+     * @return the overlapping tasks, ordered by start. Tasks which are not
+     *         bound to a view are left out.
+     */
+    public ArrayList<DependentSeekBar> getTasksOverlapping(int from, int to) {
+        ArrayList<DependentSeekBar> overlapping = new ArrayList<DependentSeekBar>();
+        // Tasks do not overlap each other, so at most the one task starting
+        // before from can reach into the range
+        int index = Math.max(0, indexAfter(from) - 1);
+        for (; index < tasks.size(); index++) {
+            final Node task = tasks.get(index);
+            final int start = task.getProgress();
+            if (start >= to) {
+                break;
+            }
+            if (start + task.getLaneDuration() > from
+                    && task.getSeekBar() != null) {
+                overlapping.add(task.getSeekBar());
+            }
+        }
+        return overlapping;
+    }
+
+    /*
+     * The index of the first task which starts after progress.
+     */
+    int indexAfter(int progress) {
+        int low = 0;
+        int high = tasks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tasks.get(middle).getProgress() <= progress) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    ArrayList<Node> getTasks() {
+        return tasks;
+    }
+}
@@ -0,0 +1,509 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+import com.oanda.dependentseekbars.lib.DependentSeekBar.Direction;
+
+/**
+ * {@link ConstraintSolver} which moves the other {@link DependentSeekBar}s as
+ * little as possible in total. Every DependentSeekBar has an anchor, which is
+ * its preferred progress while it takes part in a shift event and its current
+ * progress otherwise. When a DependentSeekBar is moved to progress t, every
+ * DependentSeekBar x which is (indirectly) greater than it is placed at
+ *
+ *     max(anchor(x), t + longestPath(x))
+ *
+ * and every DependentSeekBar which is (indirectly) less than it at
+ *
+ *     min(anchor(x), t - longestPath(x))
+ *
+ * where longestPath is the length of the longest chain of dependencies between
+ * the moved DependentSeekBar and x. This is the solution the pool adjacent
+ * violators algorithm converges to when the moved DependentSeekBar is fixed
+ * and everything else is pulled towards a feasible set of anchors, but it only
+ * needs a single pass over the DependentSeekBars reachable from the moved one
+ * in topological order. The result does not depend on the order in which
+ * dependencies were added, and bars return to their preferred progress as
+ * part of the same pass, so {@link #checkPreferredProgress} has nothing left
+ * to do. DependentSeekBars tied together by Equal dependencies are treated as
+ * a single bar, with chain lengths adjusted by their offsets, and so are the
+ * members of a {@link SeekBarGroup} which does not contain the moved bar.
+ *
+ * When a shift event starts, the response of every reachable bar to the moved
+ * bar's progress is precomputed as a {@link ShiftResponse}, so that each
+ * further move during the event only touches the bars whose progress actually
+ * changes, independent of the size of the graph.
+ *
+ * Instances keep scratch buffers between calls and must only be used from the
+ * UI thread.
+ *
+ * @see DependentSeekBarManager#setShiftMode(DependentSeekBarManager.ShiftMode)
+ */
+class MinimalDisplacementSolver implements ConstraintSolver {
+    private final ArrayList<Node> mChildOrder = new ArrayList<Node>();
+    private final ArrayList<Node> mParentOrder = new ArrayList<Node>();
+    private final ArrayList<Node> mQueue = new ArrayList<Node>();
+    private final EdgeList mEdges = new EdgeList();
+    private int mStamp = 0;
+    private ShiftResponse mResponse;
+    private Node mRoot;
+    private SeekBarGroup mRootGroup;
+    private boolean mSawGroup;
+
+    @Override
+    public int canMove(Node seekNode, int displacement, int oldProgress,
+            boolean checkOnly) {
+        final DependentSeekBarManager manager = seekNode.getManager();
+        final SumConstraint sum = seekNode.getSumConstraint();
+        if (sum != null) {
+            // The members of a sum constraint have no other dependencies
+            return displacement != 0 && !seekNode.isPinned()
+                    && manager.isShiftingAllowed() ? sum.move(seekNode,
+                    displacement, oldProgress, seekNode.inShiftEvent(),
+                    checkOnly) : 0;
+        }
+        startSolve(seekNode, null);
+        if (displacement == 0 || isPinned(seekNode)) {
+            return 0;
+        }
+
+        if (mResponse != null && (mResponse.root != seekNode
+                || mResponse.modelVersion != manager.getModelVersion())) {
+            // Something other than the dragged bar is being moved, or the
+            // dependencies have changed
+            mResponse = null;
+        }
+        if (!checkOnly && mResponse != null && manager.isShiftingAllowed()
+                && mResponse.getPosition() == oldProgress) {
+            final int movement = clampedMovement(oldProgress, displacement,
+                    mResponse.lowest, mResponse.highest);
+            mResponse.moveTo(oldProgress + movement);
+            return movement;
+        }
+        return solve(displacement, oldProgress, checkOnly, seekNode);
+    }
+
+    /**
+     * Moves the group as one unit, placing the bars around it in the same way
+     * as for a single bar.
+     */
+    @Override
+    public int canMoveGroup(SeekBarGroup group, int displacement,
+            boolean checkOnly) {
+        final Node node = group.getRepresentative();
+        mResponse = null;
+        startSolve(node, group);
+        if (displacement == 0 || isPinned(node)) {
+            return 0;
+        }
+        return solve(displacement, node.getProgress(), checkOnly, null);
+    }
+
+    /*
+     * Moves mRoot's unit by displacement, or as far as it can go, leaving out
+     * skip, which is moved by the caller.
+     */
+    private int solve(int displacement, int oldProgress, boolean checkOnly,
+            Node skip) {
+        final Node root = mRoot;
+        final DependentSeekBarManager manager = root.getManager();
+        // The range of root's unit, in terms of root's own progress
+        int lowest = minimum(root);
+        int highest = maximum(root);
+
+        final boolean usePreferredProgress = root.inShiftEvent();
+        if (!manager.isShiftingAllowed()) {
+            // Without shifting, the seek bar can only move up to its direct
+            // dependencies
+            final EdgeList greater = edgesOf(root, true);
+            for (int i = 0; i < greater.size; i++) {
+                highest = Math.min(highest, greater.to[i].getProgress()
+                        - greater.gap[i] - shift(greater.from[i], root));
+            }
+            final EdgeList smaller = edgesOf(root, false);
+            for (int i = 0; i < smaller.size; i++) {
+                lowest = Math.max(lowest, smaller.to[i].getProgress()
+                        + smaller.gap[i] - shift(smaller.from[i], root));
+            }
+            final int movement = clampedMovement(oldProgress, displacement,
+                    lowest, highest);
+            placeUnit(root, oldProgress + movement, skip,
+                    usePreferredProgress, checkOnly);
+            return movement;
+        }
+
+        // Walls (pinned bars, or bars the budget did not allow exploring)
+        // can't move, so they bound the target by their current progress
+        // instead of their limits
+        final SolveBudget budget = manager.getSolveBudget();
+        sortReachable(root, true, mChildOrder, budget);
+        for (int i = 1; i < mChildOrder.size(); i++) {
+            final Node node = mChildOrder.get(i);
+            final int limit = node.solverWall ? node.getProgress()
+                    : maximum(node);
+            highest = Math.min(highest, limit - node.solverDepth);
+        }
+        sortReachable(root, false, mParentOrder, budget);
+        for (int i = 1; i < mParentOrder.size(); i++) {
+            final Node node = mParentOrder.get(i);
+            final int limit = node.solverWall ? node.getProgress()
+                    : minimum(node);
+            lowest = Math.max(lowest, limit + node.solverDepth);
+        }
+
+        final int movement = clampedMovement(oldProgress, displacement,
+                lowest, highest);
+        final int target = oldProgress + movement;
+        placeUnit(root, target, skip, usePreferredProgress, checkOnly);
+        for (int i = 1; i < mChildOrder.size(); i++) {
+            final Node node = mChildOrder.get(i);
+            if (node.solverWall) {
+                continue;
+            }
+            placeUnit(node, Math.max(anchor(node), target + node.solverDepth),
+                    null, usePreferredProgress, checkOnly);
+        }
+        for (int i = 1; i < mParentOrder.size(); i++) {
+            final Node node = mParentOrder.get(i);
+            if (node.solverWall) {
+                continue;
+            }
+            placeUnit(node, Math.min(anchor(node), target - node.solverDepth),
+                    null, usePreferredProgress, checkOnly);
+        }
+        mChildOrder.clear();
+        mParentOrder.clear();
+        return movement;
+    }
+
+    /**
+     * Bars are already returned to their preferred progress by
+     * {@link #canMove(Node, int, int, boolean)}, so this does nothing.
+     */
+    @Override
+    public void checkPreferredProgress(Node node, Direction direction) {
+    }
+
+    /**
+     * Precomputes the response of every bar reachable from seekNode, so that
+     * moving seekNode during the shift event only costs as much as the number
+     * of bars which move.
+     */
+    @Override
+    public void startShiftEvent(Node seekNode) {
+        if (seekNode.getSumConstraint() != null) {
+            mResponse = null;
+            return;
+        }
+        final DependentSeekBarManager manager = seekNode.getManager();
+        final SolveBudget budget = manager.getSolveBudget();
+        budget.startUnbounded();
+        startSolve(seekNode, null);
+        final int progress = seekNode.getProgress();
+        int lowest = minimum(seekNode);
+        int highest = maximum(seekNode);
+
+        ArrayList<ShiftResponse.Entry> greater = new ArrayList<ShiftResponse.Entry>();
+        sortReachable(seekNode, true, mChildOrder, budget);
+        for (int i = 1; i < mChildOrder.size(); i++) {
+            final Node node = mChildOrder.get(i);
+            final int limit = node.solverWall ? node.getProgress()
+                    : maximum(node);
+            highest = Math.min(highest, limit - node.solverDepth);
+            if (!node.solverWall) {
+                greater.add(ShiftResponse.greaterEntry(node,
+                        node.solverDepth, anchor(node)));
+            }
+        }
+        ArrayList<ShiftResponse.Entry> smaller = new ArrayList<ShiftResponse.Entry>();
+        sortReachable(seekNode, false, mParentOrder, budget);
+        for (int i = 1; i < mParentOrder.size(); i++) {
+            final Node node = mParentOrder.get(i);
+            final int limit = node.solverWall ? node.getProgress()
+                    : minimum(node);
+            lowest = Math.max(lowest, limit + node.solverDepth);
+            if (!node.solverWall) {
+                smaller.add(ShiftResponse.smallerEntry(node,
+                        node.solverDepth, anchor(node)));
+            }
+        }
+        mChildOrder.clear();
+        mParentOrder.clear();
+
+        // The response places whole equality groups, so a group moving as a
+        // unit has to be solved on every move instead
+        if (mSawGroup) {
+            mResponse = null;
+            return;
+        }
+        mResponse = new ShiftResponse(seekNode, manager.getModelVersion(),
+                progress, lowest, highest, greater, smaller);
+    }
+
+    @Override
+    public void endShiftEvent(Node node) {
+        if (mResponse != null && mResponse.root == node) {
+            mResponse = null;
+        }
+    }
+
+    /*
+     * Clamps oldProgress + displacement to [lowest, highest] and returns the
+     * resulting movement, or 0 if the clamping reverses the direction.
+     */
+    private static int clampedMovement(int oldProgress, int displacement,
+            int lowest, int highest) {
+        int target = Math.max(lowest,
+                Math.min(highest, oldProgress + displacement));
+        int movement = target - oldProgress;
+        if ((displacement > 0 && movement < 0)
+                || (displacement < 0 && movement > 0)) {
+            return 0;
+        }
+        return movement;
+    }
+
+    private static int anchor(Node node) {
+        return node.inShiftEvent() ? node.getPreferredProgress() : node
+                .getProgress();
+    }
+
+    /*
+     * Moves node's equality group so that node ends up at progress, leaving
+     * out skip, which is moved by the caller.
+     */
+    static void place(Node node, int progress, Node skip,
+            boolean usePreferredProgress, boolean checkOnly) {
+        final int offset = node.getEqualityOffset();
+        for (Node member : node.getEqualityGroup()) {
+            if (member == skip) {
+                continue;
+            }
+            placeMember(member, progress + member.getEqualityOffset()
+                    - offset, usePreferredProgress, checkOnly);
+        }
+    }
+
+    private static void placeMember(Node member, int progress,
+            boolean usePreferredProgress, boolean checkOnly) {
+        // Every reachable bar is flagged during a dry run so that the
+        // whole set is reverted or committed together afterwards
+        if (checkOnly) {
+            member.useTempProgress();
+        }
+        if (progress == member.getProgress()) {
+            return;
+        }
+        if (usePreferredProgress) {
+            member.joinShiftEvent();
+        }
+        member.applyProgress(progress, checkOnly);
+    }
+
+    /*
+     * Moves the unit represented by node so that node ends up at progress. A
+     * group is shifted as a whole.
+     */
+    private void placeUnit(Node node, int progress, Node skip,
+            boolean usePreferredProgress, boolean checkOnly) {
+        final SeekBarGroup group = node.solverGroup;
+        if (group == null) {
+            place(node, progress, skip, usePreferredProgress, checkOnly);
+            return;
+        }
+        final int distance = progress - node.getProgress();
+        if (distance == 0 && !checkOnly) {
+            return;
+        }
+        group.movedTemporarily |= checkOnly;
+        group.joinedShiftEvent |= usePreferredProgress;
+        for (Node member : group.getMembers()) {
+            if (member != skip) {
+                placeMember(member, member.getProgress() + distance,
+                        usePreferredProgress, checkOnly);
+            }
+        }
+    }
+
+    /*
+     * Makes root the bar being moved, along with group if it is not null, for
+     * the following calls.
+     */
+    private void startSolve(Node root, SeekBarGroup group) {
+        mRoot = root;
+        mRootGroup = group;
+        root.solverGroup = group;
+        mSawGroup = group != null;
+    }
+
+    /*
+     * The node representing the unit node moves with. The root's unit is
+     * its group when a whole group is moved and its equality group
+     * otherwise. Any other bar in a group which does not contain the root
+     * moves with the outermost such group, and with its equality group
+     * otherwise.
+     */
+    private Node unitOf(Node node) {
+        if (mRootGroup != null ? mRootGroup.contains(node) : node
+                .getEqualityRoot() == mRoot.getEqualityRoot()) {
+            return mRoot;
+        }
+        final SeekBarGroup group = SeekBarGroup.outermostExcluding(node,
+                mRoot);
+        if (group != null) {
+            final Node representative = group.getRepresentative();
+            representative.solverGroup = group;
+            mSawGroup = true;
+            return representative;
+        }
+        final Node representative = node.getEqualityRoot();
+        representative.solverGroup = null;
+        return representative;
+    }
+
+    /*
+     * The distance between member and the node representing its unit, which
+     * stays fixed while the unit moves. Only valid until the first bar is
+     * placed.
+     */
+    private static int shift(Node member, Node unit) {
+        if (unit.solverGroup != null) {
+            return member.getProgress() - unit.getProgress();
+        }
+        return member.getEqualityOffset() - unit.getEqualityOffset();
+    }
+
+    private static ArrayList<Node> membersOf(Node unit) {
+        return unit.solverGroup != null ? unit.solverGroup.getMembers()
+                : unit.getEqualityGroup();
+    }
+
+    /*
+     * The dependencies leaving unit in one direction. A group only has to
+     * look at the edges crossing its boundary.
+     */
+    private EdgeList edgesOf(Node unit, boolean towardsChildren) {
+        if (unit.solverGroup != null) {
+            return unit.solverGroup.getBoundary(towardsChildren);
+        }
+        mEdges.clear();
+        for (Node member : unit.getEqualityGroup()) {
+            member.collectEdges(towardsChildren, null, mEdges);
+        }
+        return mEdges;
+    }
+
+    private static boolean isPinned(Node unit) {
+        for (Node member : membersOf(unit)) {
+            if (member.isPinned()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * The lowest and highest progress unit can have without pushing any of
+     * its members out of range.
+     */
+    private static int minimum(Node unit) {
+        if (unit.solverGroup != null) {
+            return unit.getProgress() - unit.solverGroup.getLowerProgress();
+        }
+        int minimum = Integer.MIN_VALUE;
+        for (Node member : unit.getEqualityGroup()) {
+            minimum = Math.max(minimum, -shift(member, unit));
+        }
+        return minimum;
+    }
+
+    private static int maximum(Node unit) {
+        if (unit.solverGroup != null) {
+            return unit.getProgress() + unit.solverGroup.getRightSlack();
+        }
+        int maximum = Integer.MAX_VALUE;
+        for (Node member : unit.getEqualityGroup()) {
+            maximum = Math.min(maximum, member.getMax()
+                    - member.getExtent() - shift(member, unit));
+        }
+        return maximum;
+    }
+
+    /*
+     * Collects every unit reachable from root's unit through children (or
+     * parents) into order, sorted topologically with root's unit first. A
+     * unit is an equality group, or a group which moves as a whole, and is
+     * represented by one of its nodes. The solverDepth of each unit is set so
+     * that a unit greater than root has to be at least root's progress +
+     * solverDepth (a smaller unit at most root's progress - solverDepth),
+     * taking the offsets of the members the dependencies are attached to into
+     * account. Without Equal dependencies or groups this is the length of the
+     * longest dependency chain from root. Pinned units, and units reached
+     * after the budget has run out, are marked as walls and are not walked
+     * past, as nothing behind them can be affected. The links between
+     * neighbouring tasks of a {@link Lane} count as dependencies with a gap of
+     * the earlier task's duration. Runs in O(V + E) of the reachable subgraph,
+     * where a group only counts the edges leaving it.
+     */
+    private void sortReachable(Node root, boolean towardsChildren,
+            ArrayList<Node> order, SolveBudget budget) {
+        final int stamp = ++mStamp;
+        final int sign = towardsChildren ? 1 : -1;
+        mQueue.clear();
+        mQueue.add(root);
+        root.solverStamp = stamp;
+        root.solverDegree = 0;
+        root.solverDepth = 0;
+        root.solverWall = false;
+        for (int i = 0; i < mQueue.size(); i++) {
+            final Node node = mQueue.get(i);
+            if (node != root) {
+                node.solverWall = isPinned(node) || !budget.visit();
+                if (node.solverWall) {
+                    continue;
+                }
+            }
+            final EdgeList edges = edgesOf(node, towardsChildren);
+            for (int j = 0; j < edges.size; j++) {
+                discover(edges.to[j], stamp);
+            }
+        }
+
+        // A unit is only added once all of its predecessors have been, so its
+        // depth is final by the time its own successors are relaxed
+        order.clear();
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            final Node node = order.get(i);
+            if (node.solverWall) {
+                continue;
+            }
+            final EdgeList edges = edgesOf(node, towardsChildren);
+            for (int j = 0; j < edges.size; j++) {
+                final Node next = unitOf(edges.to[j]);
+                final int shift = sign
+                        * (shift(edges.from[j], node) - shift(edges.to[j],
+                                next));
+                next.solverDepth = Math.max(next.solverDepth,
+                        node.solverDepth + shift + edges.gap[j]);
+                if (--next.solverDegree == 0) {
+                    order.add(next);
+                }
+            }
+        }
+        mQueue.clear();
+        mEdges.clear();
+    }
+
+    private void discover(Node next, int stamp) {
+        final Node unit = unitOf(next);
+        if (unit.solverStamp != stamp) {
+            unit.solverStamp = stamp;
+            unit.solverDegree = 0;
+            unit.solverDepth = Integer.MIN_VALUE;
+            mQueue.add(unit);
+        }
+        unit.solverDegree++;
+    }
+}
@@ -0,0 +1,178 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Takes progress for the seek bars of a {@link DependentSeekBarManager} from
+ * any thread, and applies it on the UI thread at most once per frame. Each
+ * seek bar has a single slot holding the latest progress posted for it, so
+ * however often a value arrives only the latest one is solved. Posting never
+ * blocks: the slots are atomic, and the ids of the seek bars with a new value
+ * are put on a lock-free queue the first time their slot is written after it
+ * was last applied.
+ *
+ * The drain runs as a {@link FrameScheduler} task, and applies every queued
+ * value in one update of the manager, so views and listeners are told about
+ * all of the moves together.
+ *
+ * Ids are handed out again after their seek bar is removed, so the slot of a
+ * removed seek bar is closed. Progress posted to it until the id is used
+ * again is dropped, and so is progress which was still queued for it.
+ *
+ * @see DependentSeekBarManager#postProgressById(int, int)
+ */
+final class ProgressFeed {
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // The states of the second int of a slot
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int REMOVED = 2;
+
+    private final DependentSeekBarManager manager;
+    // Two ints per id: the latest progress posted and whether the id is
+    // queued or removed. The slots are kept in chunks which are never
+    // replaced, so that a post racing with the growth of the table is not
+    // lost
+    private volatile AtomicIntegerArray[] chunks = new AtomicIntegerArray[0];
+    private final ConcurrentLinkedQueue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Frame callbacks can only be posted from the UI thread, so posts from
+    // other threads get there through the main handler first
+    private final Runnable scheduleDrain = new Runnable() {
+        @Override
+        public void run() {
+            manager.getFrameScheduler().schedule(drain);
+        }
+    };
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    ProgressFeed(DependentSeekBarManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Makes sure that ids up to size - 1 can be posted to. Must be called on
+     * the UI thread before the ids are handed out.
+     */
+    void ensureCapacity(int size) {
+        final AtomicIntegerArray[] table = chunks;
+        final int count = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (count <= table.length) {
+            return;
+        }
+        final AtomicIntegerArray[] grown = new AtomicIntegerArray[Math.max(
+                count, table.length * 2)];
+        System.arraycopy(table, 0, grown, 0, table.length);
+        for (int i = table.length; i < grown.length; i++) {
+            grown[i] = new AtomicIntegerArray(CHUNK_SIZE * 2);
+        }
+        chunks = grown;
+    }
+
+    /**
+     * Opens the slot of id for a new seek bar. Must be called on the UI
+     * thread after {@link #ensureCapacity(int)}.
+     */
+    void open(int id) {
+        final AtomicIntegerArray slots = chunks[id >>> CHUNK_SHIFT];
+        final int slot = (id & CHUNK_MASK) << 1;
+        slots.set(slot, 0);
+        // An entry of the removed seek bar which is still queued finds the
+        // slot idle, and is skipped by the drain
+        slots.set(slot + 1, IDLE);
+    }
+
+    /**
+     * Closes the slot of the removed seek bar with id, dropping the progress
+     * queued for it. Must be called on the UI thread.
+     */
+    void close(int id) {
+        final AtomicIntegerArray slots = chunks[id >>> CHUNK_SHIFT];
+        final int slot = (id & CHUNK_MASK) << 1;
+        slots.set(slot + 1, REMOVED);
+        slots.set(slot, 0);
+    }
+
+    /**
+     * Sets the progress to apply to the seek bar with id on the next frame.
+     * Can be called from any thread.
+     *
+     * @throws IndexOutOfBoundsException if id has never been used
+     */
+    void post(int id, int progress) {
+        final AtomicIntegerArray[] table = chunks;
+        if (id < 0 || (id >>> CHUNK_SHIFT) >= table.length)
+            throw new IndexOutOfBoundsException("No seek bar with id " + id);
+        final AtomicIntegerArray slots = table[id >>> CHUNK_SHIFT];
+        final int slot = (id & CHUNK_MASK) << 1;
+        slots.set(slot, progress);
+        enqueue(slots, slot, id);
+    }
+
+    /*
+     * Queues id unless it is queued already, and makes sure a drain will run.
+     */
+    private void enqueue(AtomicIntegerArray slots, int slot, int id) {
+        if (!slots.compareAndSet(slot + 1, IDLE, QUEUED)) {
+            return;
+        }
+        queue.offer(Integer.valueOf(id));
+        queued.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            mainHandler.post(scheduleDrain);
+        }
+    }
+
+    /**
+     * Applies the latest progress of every queued seek bar in one update.
+     * Must be called on the UI thread.
+     */
+    void drain() {
+        scheduled.set(false);
+        // Ids queued again while draining, or by a drain which ran out of
+        // budget, wait for the next frame
+        int remaining = queued.get();
+        if (remaining == 0) {
+            return;
+        }
+        final AtomicIntegerArray[] table = chunks;
+        manager.beginUpdate();
+        while (remaining-- > 0) {
+            final Integer next = queue.poll();
+            if (next == null) {
+                break;
+            }
+            queued.decrementAndGet();
+            final int id = next.intValue();
+            final AtomicIntegerArray slots = table[id >>> CHUNK_SHIFT];
+            final int slot = (id & CHUNK_MASK) << 1;
+            // The entry is skipped if the seek bar was removed after it was
+            // queued
+            if (!slots.compareAndSet(slot + 1, QUEUED, IDLE)) {
+                continue;
+            }
+            if (manager.applyPostedProgress(id, slots.get(slot))) {
+                enqueue(slots, slot, id);
+            }
+        }
+        manager.endUpdate();
+    }
+}
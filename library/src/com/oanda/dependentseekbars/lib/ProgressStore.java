@@ -0,0 +1,139 @@
+package com.oanda.dependentseekbars.lib;
+
+/**
+ * The progress state of a set of {@link DependentSeekBar}s, stored as
+ * parallel arrays indexed by slot. A {@link DependentSeekBarManager} keeps
+ * the state of all of its seek bars in one store, using their ids as slots,
+ * so that the solvers read progress, maximums and flags straight from the
+ * arrays rather than through the views. Seek bars without a view only exist
+ * in the store. A DependentSeekBar which is not in a manager has a store of
+ * its own with a single slot.
+ *
+ * The arrays are replaced when the store grows, so they must always be
+ * reached through the store rather than held on to.
+ */
+final class ProgressStore {
+    // The progress accepted by the dependency logic
+    int[] progress;
+    // The progress during a dry run, used instead of progress while
+    // usingTemp is set
+    int[] tempProgress;
+    boolean[] usingTemp;
+    // The progress to return to during a shift event, used while
+    // inShiftEvent is set
+    int[] preferredProgress;
+    boolean[] inShiftEvent;
+    int[] max;
+    // The distance from the progress to the upper end of a
+    // DependentRangeSeekBar
+    int[] extent;
+    boolean[] pinned;
+    // Set while a solve has changed the progress but the view has not been
+    // updated yet, along with the progress before the solve
+    boolean[] dirty;
+    int[] progressBeforeUpdate;
+    // The range the progress can be moved to given the dependencies, valid
+    // while boundsValid is set and the model version, component stamp and
+    // shifting state are still the ones it was computed with. The component
+    // stamp is not checked if boundsFixed is set, as the bounds did not depend
+    // on the progress of the other seek bars
+    int[] lowerBound;
+    int[] upperBound;
+    boolean[] boundsValid;
+    int[] boundsModelVersion;
+    int[] boundsComponentStamp;
+    boolean[] boundsShifting;
+    boolean[] boundsFixed;
+
+    ProgressStore(int capacity) {
+        progress = new int[capacity];
+        tempProgress = new int[capacity];
+        usingTemp = new boolean[capacity];
+        preferredProgress = new int[capacity];
+        inShiftEvent = new boolean[capacity];
+        max = new int[capacity];
+        extent = new int[capacity];
+        pinned = new boolean[capacity];
+        dirty = new boolean[capacity];
+        progressBeforeUpdate = new int[capacity];
+        lowerBound = new int[capacity];
+        upperBound = new int[capacity];
+        boundsValid = new boolean[capacity];
+        boundsModelVersion = new int[capacity];
+        boundsComponentStamp = new int[capacity];
+        boundsShifting = new boolean[capacity];
+        boundsFixed = new boolean[capacity];
+    }
+
+    /**
+     * Makes sure that slots up to size - 1 can be used.
+     */
+    void ensureCapacity(int size) {
+        if (size <= progress.length) {
+            return;
+        }
+        final int capacity = Math.max(size, progress.length * 2);
+        progress = grow(progress, capacity);
+        tempProgress = grow(tempProgress, capacity);
+        usingTemp = grow(usingTemp, capacity);
+        preferredProgress = grow(preferredProgress, capacity);
+        inShiftEvent = grow(inShiftEvent, capacity);
+        max = grow(max, capacity);
+        extent = grow(extent, capacity);
+        pinned = grow(pinned, capacity);
+        dirty = grow(dirty, capacity);
+        progressBeforeUpdate = grow(progressBeforeUpdate, capacity);
+        lowerBound = grow(lowerBound, capacity);
+        upperBound = grow(upperBound, capacity);
+        boundsValid = grow(boundsValid, capacity);
+        boundsModelVersion = grow(boundsModelVersion, capacity);
+        boundsComponentStamp = grow(boundsComponentStamp, capacity);
+        boundsShifting = grow(boundsShifting, capacity);
+        boundsFixed = grow(boundsFixed, capacity);
+    }
+
+    /**
+     * Resets slot to the state of a new seek bar, so that it can be reused.
+     */
+    void clear(int slot) {
+        progress[slot] = 0;
+        tempProgress[slot] = 0;
+        usingTemp[slot] = false;
+        preferredProgress[slot] = 0;
+        inShiftEvent[slot] = false;
+        max[slot] = 0;
+        extent[slot] = 0;
+        pinned[slot] = false;
+        dirty[slot] = false;
+        progressBeforeUpdate[slot] = 0;
+        boundsValid[slot] = false;
+    }
+
+    /**
+     * Copies the state in slot fromSlot of from into slot of this store. The
+     * state of an update in progress and the cached bounds are not copied.
+     */
+    void copy(int slot, ProgressStore from, int fromSlot) {
+        progress[slot] = from.progress[fromSlot];
+        tempProgress[slot] = from.tempProgress[fromSlot];
+        usingTemp[slot] = from.usingTemp[fromSlot];
+        preferredProgress[slot] = from.preferredProgress[fromSlot];
+        inShiftEvent[slot] = from.inShiftEvent[fromSlot];
+        max[slot] = from.max[fromSlot];
+        extent[slot] = from.extent[fromSlot];
+        pinned[slot] = from.pinned[fromSlot];
+        boundsValid[slot] = false;
+    }
+
+    private static int[] grow(int[] values, int capacity) {
+        final int[] grown = new int[capacity];
+        System.arraycopy(values, 0, grown, 0, values.length);
+        return grown;
+    }
+
+    private static boolean[] grow(boolean[] values, int capacity) {
+        final boolean[] grown = new boolean[capacity];
+        System.arraycopy(values, 0, grown, 0, values.length);
+        return grown;
+    }
+}
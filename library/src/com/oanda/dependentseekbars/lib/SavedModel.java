@@ -0,0 +1,88 @@
+package com.oanda.dependentseekbars.lib;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * The model of a {@link DependentSeekBarManager}, packed into a few arrays so
+ * that it can be put in the saved instance state of an Activity in one go.
+ * It holds the ids of the seek bars with their progress, preferred progress,
+ * maximum, extent and pinned state, along with the Less Than, Greater Than and
+ * Equal dependencies between them. The dependencies were valid when they were
+ * saved, so restoring them doesn't check them again.
+ *
+ * @see DependentSeekBarManager#saveModel()
+ * @see DependentSeekBarManager#restoreModel(SavedModel)
+ */
+public final class SavedModel implements Parcelable {
+    // One more than the highest id in use
+    final int idCount;
+    // The ids in the order the seek bars were added, and the state of each
+    // seek bar in the same order
+    final int[] ids;
+    final int[] progress;
+    final int[] preferredProgress;
+    final int[] max;
+    final int[] extent;
+    final boolean[] pinned;
+    // Pairs of ids, the first of which is less than the second
+    final int[] lessThan;
+    // Triples of an id, the id of the root of its equality group and the
+    // progress of the seek bar minus the progress of the root
+    final int[] equal;
+
+    SavedModel(int idCount, int[] ids, int[] progress,
+            int[] preferredProgress, int[] max, int[] extent,
+            boolean[] pinned, int[] lessThan, int[] equal) {
+        this.idCount = idCount;
+        this.ids = ids;
+        this.progress = progress;
+        this.preferredProgress = preferredProgress;
+        this.max = max;
+        this.extent = extent;
+        this.pinned = pinned;
+        this.lessThan = lessThan;
+        this.equal = equal;
+    }
+
+    /**
+     * @return the number of seek bars in the model
+     */
+    public int getSeekBarCount() {
+        return ids.length;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(idCount);
+        dest.writeIntArray(ids);
+        dest.writeIntArray(progress);
+        dest.writeIntArray(preferredProgress);
+        dest.writeIntArray(max);
+        dest.writeIntArray(extent);
+        dest.writeBooleanArray(pinned);
+        dest.writeIntArray(lessThan);
+        dest.writeIntArray(equal);
+    }
+
+    public static final Parcelable.Creator<SavedModel> CREATOR = new Parcelable.Creator<SavedModel>() {
+        @Override
+        public SavedModel createFromParcel(Parcel source) {
+            return new SavedModel(source.readInt(), source.createIntArray(),
+                    source.createIntArray(), source.createIntArray(),
+                    source.createIntArray(), source.createIntArray(),
+                    source.createBooleanArray(), source.createIntArray(),
+                    source.createIntArray());
+        }
+
+        @Override
+        public SavedModel[] newArray(int size) {
+            return new SavedModel[size];
+        }
+    };
+}
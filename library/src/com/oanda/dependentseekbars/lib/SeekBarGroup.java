@@ -0,0 +1,226 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * A group of {@link DependentSeekBar}s, or of smaller groups, which moves as a
+ * single super-node when anything outside of it pushes into it, such as the
+ * steps of a task or the tasks of a phase. The seek bars inside a group keep
+ * their dependencies on each other: dragging one of them only moves the others
+ * as far as those dependencies require, but once one of them is pushed by a
+ * seek bar outside of the group, the whole group shifts by the same distance.
+ *
+ * Each group keeps the dependencies which cross its boundary, and its lower
+ * and upper progress, so that moving a group only has to look at the edges
+ * leaving it rather than at every seek bar inside. Both are only recomputed
+ * after the dependencies change or something inside the group has moved.
+ *
+ * Groups nest but never overlap. No chain of dependencies may leave a group
+ * and come back into it, as the group would then have to push itself, and
+ * for the same reason groups may not push each other in a circle.
+ *
+ * @see DependentSeekBarManager#createGroup(DependentSeekBar...)
+ * @see DependentSeekBarManager#createGroup(SeekBarGroup...)
+ */
+public final class SeekBarGroup {
+    private final ArrayList<Node> members;
+    private SeekBarGroup parent;
+    private int stamp = 0;
+    private int boundsStamp = -1;
+    private int boundsModelVersion;
+    private int lowerProgress;
+    private int upperProgress;
+    private int rightSlack;
+    private int boundaryModelVersion;
+    private EdgeList greaterBoundary;
+    private EdgeList smallerBoundary;
+
+    // Set by the solvers when the whole group is moved, so that the
+    // temporary progress and preferred progress of every member get cleared
+    // again
+    boolean movedTemporarily = false;
+    boolean joinedShiftEvent = false;
+    int visitStamp;
+
+    SeekBarGroup(ArrayList<Node> members) {
+        this.members = members;
+    }
+
+    /**
+     * @return the group this group is nested in, or null
+     */
+    public SeekBarGroup getParent() {
+        return parent;
+    }
+
+    /**
+     * @return the number of seek bars in the group, including those of nested
+     *         groups
+     */
+    public int getSeekBarCount() {
+        return members.size();
+    }
+
+    /**
+     * @param seekBar
+     * @return true iff seekBar is in this group or one of its nested groups
+     */
+    public boolean contains(DependentSeekBar seekBar) {
+        final Node node = seekBar.getNode();
+        return node != null && contains(node);
+    }
+
+    /**
+     * @return the lowest progress of any seek bar in the group
+     */
+    public int getLowerProgress() {
+        updateBounds();
+        return lowerProgress;
+    }
+
+    /**
+     * @return the highest progress of any seek bar in the group, counting the
+     *         upper end of a {@link DependentRangeSeekBar}
+     */
+    public int getUpperProgress() {
+        updateBounds();
+        return upperProgress;
+    }
+
+    /**
+     * Moves the whole group by displacement, shifting the seek bars outside of
+     * it out of the way where allowed. The seek bars inside the group keep
+     * their distances to each other.
+     *
+     * @param displacement the distance to move the group right
+     * @return the distance the group has moved
+     */
+    public int moveBy(int displacement) {
+        if (displacement == 0 || members.isEmpty()) {
+            return 0;
+        }
+        final DependentSeekBarManager manager = members.get(0).getManager();
+        manager.getSolveBudget().startUnbounded();
+        manager.beginUpdate();
+        final int moved = manager.getConstraintSolver().canMoveGroup(this,
+                displacement, false);
+        manager.endUpdate();
+        return moved;
+    }
+
+    void setParent(SeekBarGroup parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * @return every seek bar's node in the group, including those of nested
+     *         groups
+     */
+    ArrayList<Node> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return the node the solvers use to stand in for the whole group
+     */
+    Node getRepresentative() {
+        return members.get(0);
+    }
+
+    boolean contains(Node node) {
+        for (SeekBarGroup group = node.getGroup(); group != null; group = group.parent) {
+            if (group == this) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return how far the group can move right before a member reaches its
+     *         maximum
+     */
+    int getRightSlack() {
+        updateBounds();
+        return rightSlack;
+    }
+
+    /**
+     * Get the dependencies from members of the group to seek bars outside of
+     * it, in the given direction.
+     *
+     * @param towardsChildren true for the seek bars greater than the group,
+     *        false for the smaller ones
+     * @return the edges leaving the group. Must not be modified.
+     */
+    EdgeList getBoundary(boolean towardsChildren) {
+        final int modelVersion = modelVersion();
+        if (greaterBoundary == null || boundaryModelVersion != modelVersion) {
+            greaterBoundary = new EdgeList();
+            smallerBoundary = new EdgeList();
+            for (Node member : members) {
+                member.collectEdges(true, this, greaterBoundary);
+                member.collectEdges(false, this, smallerBoundary);
+            }
+            boundaryModelVersion = modelVersion;
+        }
+        return towardsChildren ? greaterBoundary : smallerBoundary;
+    }
+
+    /*
+     * Members moved, so the bounds have to be recomputed.
+     */
+    static void touch(Node node) {
+        for (SeekBarGroup group = node.getGroup(); group != null; group = group.parent) {
+            group.stamp++;
+        }
+    }
+
+    /*
+     * The outermost group which contains node but not other, which is the
+     * group node moves with when other pushes it. Returns null if every group
+     * of node also contains other.
+     */
+    static SeekBarGroup outermostExcluding(Node node, Node other) {
+        SeekBarGroup outermost = null;
+        for (SeekBarGroup group = node.getGroup(); group != null; group = group.parent) {
+            // Groups are nested, so every group around one containing other
+            // contains it as well
+            if (group.contains(other)) {
+                break;
+            }
+            outermost = group;
+        }
+        return outermost;
+    }
+
+    private void updateBounds() {
+        final int modelVersion = modelVersion();
+        if (boundsStamp == stamp && boundsModelVersion == modelVersion) {
+            return;
+        }
+        lowerProgress = members.isEmpty() ? 0 : Integer.MAX_VALUE;
+        upperProgress = members.isEmpty() ? 0 : Integer.MIN_VALUE;
+        rightSlack = members.isEmpty() ? 0 : Integer.MAX_VALUE;
+        for (Node member : members) {
+            final int progress = member.getProgress();
+            final int extent = member.getExtent();
+            lowerProgress = Math.min(lowerProgress, progress);
+            upperProgress = Math.max(upperProgress, progress + extent);
+            rightSlack = Math.min(rightSlack, member.getMax()
+                    - extent - progress);
+        }
+        boundsStamp = stamp;
+        boundsModelVersion = modelVersion;
+    }
+
+    private int modelVersion() {
+        if (members.isEmpty()) {
+            return 0;
+        }
+        final DependentSeekBarManager manager = members.get(0).getManager();
+        return manager != null ? manager.getModelVersion() : 0;
+    }
+}
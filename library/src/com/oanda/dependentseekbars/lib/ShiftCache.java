@@ -0,0 +1,181 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * Results of {@link GreedyConstraintSolver} calls made during a single shift
+ * event, so that scrubbing back and forth over the same progress values does
+ * not solve the same moves over and over again.
+ *
+ * While a result is recorded, every node the solver reads is stored along
+ * with the progress it had, and every node it moves along with the progress
+ * it ends up at. A stored result is only reused if all of the nodes it read
+ * still have the same progress, in which case the solver would do exactly the
+ * same thing again, so the moves can be applied directly.
+ *
+ * The cache belongs to the node that started the shift event and is dropped
+ * when the event ends or the manager's model version changes. Each kind of
+ * call keeps at most {@link #MAX_ENTRIES} results, dropping the least
+ * recently used one first, so a long drag over a wide range does not keep a
+ * copy of the component for every progress value it passed.
+ */
+final class ShiftCache {
+    static final int MOVE = 0;
+    static final int CHECK = 1;
+    static final int PREFERRED = 2;
+    static final int MAX_ENTRIES = 64;
+
+    final Node root;
+    final int modelVersion;
+    private final ArrayList<LruMap> entries;
+
+    private HashMap<Node, Integer> recordedIndex;
+    private ArrayList<Node> recordedNodes;
+    private ArrayList<Integer> recordedProgress;
+    private ArrayList<Boolean> recordedShiftEvent;
+    private ArrayList<Boolean> recordedWrite;
+
+    ShiftCache(Node root, int modelVersion) {
+        this.root = root;
+        this.modelVersion = modelVersion;
+        entries = new ArrayList<LruMap>(3);
+        for (int i = 0; i <= PREFERRED; i++) {
+            entries.add(new LruMap());
+        }
+    }
+
+    private static Long key(int start, int amount) {
+        return Long.valueOf(((long) start << 32) | (amount & 0xffffffffL));
+    }
+
+    Entry get(int kind, int start, int amount) {
+        return entries.get(kind).get(key(start, amount));
+    }
+
+    boolean isRecording() {
+        return recordedNodes != null;
+    }
+
+    void startRecording() {
+        recordedIndex = new HashMap<Node, Integer>();
+        recordedNodes = new ArrayList<Node>();
+        recordedProgress = new ArrayList<Integer>();
+        recordedShiftEvent = new ArrayList<Boolean>();
+        recordedWrite = new ArrayList<Boolean>();
+    }
+
+    /**
+     * Records the state of node the first time it is seen during a recording.
+     * Must be called before the solver reads or changes node.
+     */
+    void read(Node node) {
+        if (!recordedIndex.containsKey(node)) {
+            recordedIndex.put(node, recordedNodes.size());
+            recordedNodes.add(node);
+            recordedProgress.add(node.getProgress());
+            recordedShiftEvent.add(node.inShiftEvent());
+            recordedWrite.add(Boolean.FALSE);
+        }
+    }
+
+    /**
+     * Records that the solver is about to move, or flag the temporary progress
+     * of, node.
+     */
+    void write(Node node) {
+        read(node);
+        recordedWrite.set(recordedIndex.get(node), Boolean.TRUE);
+    }
+
+    /**
+     * Stops recording and, unless discard is true, stores the result under
+     * the given key.
+     */
+    void finishRecording(int kind, int start, int amount, int result,
+            boolean discard) {
+        if (!discard) {
+            final int size = recordedNodes.size();
+            Entry entry = new Entry(result, size);
+            for (int i = 0; i < size; i++) {
+                final Node node = recordedNodes.get(i);
+                entry.nodes[i] = node;
+                entry.before[i] = recordedProgress.get(i);
+                entry.beforeShiftEvent[i] = recordedShiftEvent.get(i);
+                entry.written[i] = recordedWrite.get(i);
+                entry.after[i] = node.getProgress();
+                entry.afterShiftEvent[i] = node.inShiftEvent();
+            }
+            entries.get(kind).put(key(start, amount), entry);
+        }
+        recordedIndex = null;
+        recordedNodes = null;
+        recordedProgress = null;
+        recordedShiftEvent = null;
+        recordedWrite = null;
+    }
+
+    private static final class LruMap extends LinkedHashMap<Long, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        LruMap() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+
+    static final class Entry {
+        final int result;
+        final Node[] nodes;
+        final int[] before;
+        final int[] after;
+        final boolean[] beforeShiftEvent;
+        final boolean[] afterShiftEvent;
+        final boolean[] written;
+
+        Entry(int result, int size) {
+            this.result = result;
+            nodes = new Node[size];
+            before = new int[size];
+            after = new int[size];
+            beforeShiftEvent = new boolean[size];
+            afterShiftEvent = new boolean[size];
+            written = new boolean[size];
+        }
+
+        /**
+         * Applies the stored moves if every node the result depends on is
+         * still in the state it was recorded in.
+         *
+         * @return true iff the moves were applied
+         */
+        boolean apply(boolean checkOnly) {
+            for (int i = 0; i < nodes.length; i++) {
+                if (nodes[i].getProgress() != before[i]
+                        || nodes[i].inShiftEvent() != beforeShiftEvent[i]) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < nodes.length; i++) {
+                if (!written[i]) {
+                    continue;
+                }
+                if (afterShiftEvent[i]) {
+                    nodes[i].joinShiftEvent();
+                }
+                if (checkOnly || after[i] != before[i]) {
+                    nodes[i].applyProgress(after[i], checkOnly);
+                }
+            }
+            return true;
+        }
+    }
+}
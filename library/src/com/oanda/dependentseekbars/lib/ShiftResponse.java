@@ -0,0 +1,124 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * The response of every DependentSeekBar reachable from a dragged
+ * DependentSeekBar to the dragged DependentSeekBar's progress t, as computed by
+ * {@link MinimalDisplacementSolver}. Each bar greater than the dragged one
+ * follows
+ *
+ *     x(t) = max(anchor, t + depth)
+ *
+ * which is constant up to its breakpoint (anchor - depth) and linear after
+ * it, and each smaller bar follows the mirrored function. The bars are sorted
+ * by breakpoint, so moving from one t to another only has to look at the bars
+ * whose breakpoint is passed, or which are already past it, which are exactly
+ * the bars that change. Bars tied together by Equal dependencies have a single
+ * entry for their whole equality group.
+ */
+final class ShiftResponse {
+    final Node root;
+    final int modelVersion;
+    final int lowest;
+    final int highest;
+    private final Entry[] greater;
+    private final Entry[] smaller;
+    private int position;
+
+    static final class Entry {
+        final Node node;
+        final int depth;
+        final int anchor;
+        final int breakpoint;
+
+        Entry(Node node, int depth, int anchor, int breakpoint) {
+            this.node = node;
+            this.depth = depth;
+            this.anchor = anchor;
+            this.breakpoint = breakpoint;
+        }
+    }
+
+    /**
+     * @param root the dragged node
+     * @param modelVersion the manager's model version the response is valid
+     *        for
+     * @param position the current progress of root
+     * @param lowest the lowest progress root can move to
+     * @param highest the highest progress root can move to
+     * @param greater the nodes greater than root, with their depths and
+     *        anchors filled in
+     * @param smaller the nodes smaller than root, with their depths and
+     *        anchors filled in
+     */
+    ShiftResponse(Node root, int modelVersion, int position, int lowest,
+            int highest, ArrayList<Entry> greater, ArrayList<Entry> smaller) {
+        this.root = root;
+        this.modelVersion = modelVersion;
+        this.position = position;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.greater = greater.toArray(new Entry[greater.size()]);
+        this.smaller = smaller.toArray(new Entry[smaller.size()]);
+        Arrays.sort(this.greater, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.breakpoint < rhs.breakpoint ? -1
+                        : (lhs.breakpoint == rhs.breakpoint ? 0 : 1);
+            }
+        });
+        Arrays.sort(this.smaller, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry lhs, Entry rhs) {
+                return lhs.breakpoint > rhs.breakpoint ? -1
+                        : (lhs.breakpoint == rhs.breakpoint ? 0 : 1);
+            }
+        });
+    }
+
+    static Entry greaterEntry(Node node, int depth, int anchor) {
+        return new Entry(node, depth, anchor, anchor - depth);
+    }
+
+    static Entry smallerEntry(Node node, int depth, int anchor) {
+        return new Entry(node, depth, anchor, anchor + depth);
+    }
+
+    /**
+     * @return the progress of root which the other nodes currently reflect
+     */
+    int getPosition() {
+        return position;
+    }
+
+    /**
+     * Moves every node whose response changes between the current position
+     * and target.
+     *
+     * @param target the new progress of root, within [lowest, highest]
+     */
+    void moveTo(int target) {
+        final int far = Math.max(position, target);
+        for (int i = 0; i < greater.length && greater[i].breakpoint < far; i++) {
+            final Entry entry = greater[i];
+            MinimalDisplacementSolver.place(entry.node,
+                    Math.max(entry.anchor, target + entry.depth), null, true,
+                    false);
+        }
+        final int near = Math.min(position, target);
+        for (int i = 0; i < smaller.length && smaller[i].breakpoint > near; i++) {
+            final Entry entry = smaller[i];
+            MinimalDisplacementSolver.place(entry.node,
+                    Math.min(entry.anchor, target - entry.depth), null, true,
+                    false);
+        }
+        // The rest of root's equality group moves in lock-step with it
+        MinimalDisplacementSolver.place(root, target, root, true, false);
+        position = target;
+    }
+}
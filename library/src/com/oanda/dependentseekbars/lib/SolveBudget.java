@@ -0,0 +1,91 @@
+package com.oanda.dependentseekbars.lib;
+
+/**
+ * Limits the amount of work a {@link ConstraintSolver} may do for a single
+ * event. Solvers call {@link #visit()} every time they are about to look at a
+ * node, and stop exploring past it once it returns false. A limit of 0 means
+ * there is no limit.
+ *
+ * An event which starts right after one that ran out of budget gets twice
+ * its budget, up to {@link #MAX_GROWTH} times the limit, so that a move
+ * which is carried on over several passes of the event loop reaches bars
+ * further away each time instead of stopping at the same ones.
+ */
+final class SolveBudget {
+    static final int MAX_GROWTH = 16;
+
+    private int maxVisits = 0;
+    private long maxNanos = 0;
+    private int visits;
+    private long deadline;
+    private boolean exhausted = false;
+    private boolean bounded = true;
+    private int growth = 1;
+    // Whether the last event started with start() ran out, which queries in
+    // between do not change
+    private boolean ranOut = false;
+
+    void setMaxVisits(int visits) {
+        maxVisits = visits;
+    }
+
+    int getMaxVisits() {
+        return maxVisits;
+    }
+
+    void setMaxNanos(long nanos) {
+        maxNanos = nanos;
+    }
+
+    long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * Resets the counters. Called at the start of every event which may
+     * cause the solver to run.
+     */
+    void start() {
+        growth = ranOut ? Math.min(growth * 2, MAX_GROWTH) : 1;
+        ranOut = false;
+        visits = 0;
+        exhausted = false;
+        bounded = true;
+        deadline = maxNanos > 0 ? System.nanoTime() + maxNanos * growth : 0;
+    }
+
+    /**
+     * Resets the counters without applying the limits. Used for queries which
+     * must return an exact answer rather than the best one found in time.
+     */
+    void startUnbounded() {
+        visits = 0;
+        exhausted = false;
+        bounded = false;
+    }
+
+    /**
+     * Records a node visit.
+     * @return true iff there was budget left for the visit
+     */
+    boolean visit() {
+        if (exhausted) {
+            return false;
+        }
+        visits++;
+        if (bounded && ((maxVisits > 0 && visits > maxVisits * growth)
+                || (deadline != 0 && System.nanoTime() - deadline > 0))) {
+            exhausted = true;
+            ranOut = true;
+        }
+        return !exhausted;
+    }
+
+    /**
+     * @return true iff the solver ran out of budget since the last call to
+     *         {@link #start()}, meaning its result may not be final
+     */
+    boolean isExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,168 @@
+package com.oanda.dependentseekbars.lib;
+
+import java.util.ArrayList;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+
+/**
+ * Keeps the progresses of a group of {@link DependentSeekBar}s summing to a
+ * fixed total, such as allocation sliders which must always add up to 100%.
+ * When one DependentSeekBar of the group moves, the others absorb the
+ * difference in a single pass over the group, either in proportion to how
+ * much each of them can give (or take), or in order of priority.
+ *
+ * The DependentSeekBars of a group can't have any other dependencies, and a
+ * DependentSeekBar can only belong to one group. Pinned members keep their
+ * progress. As the other members have to move for a member to move at all,
+ * the group is frozen while shifting is disabled.
+ *
+ * @see DependentSeekBarManager#addSumConstraint(int, DependentSeekBar...)
+ */
+public final class SumConstraint {
+
+    public enum Rebalance {
+        /**
+         * Every other member gives (or takes) a share proportional to how far
+         * it can move in that direction.
+         */
+        PROPORTIONAL,
+        /**
+         * The other members give (or take) as much as they can, one after the
+         * other in the order they were added to the group.
+         */
+        PRIORITY;
+    }
+
+    private final ArrayList<Node> members;
+    private int total;
+    private Rebalance rebalance = Rebalance.PROPORTIONAL;
+    private int[] shares;
+    private int[] room;
+
+    SumConstraint(ArrayList<Node> members, int total) {
+        this.members = members;
+        this.total = total;
+        shares = new int[members.size()];
+        room = new int[members.size()];
+    }
+
+    /**
+     * @return the total the progresses of the group always sum to
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public Rebalance getRebalance() {
+        return rebalance;
+    }
+
+    /**
+     * Set how a move of one member is spread over the rest of the group.
+     * {@link Rebalance#PROPORTIONAL} is the default.
+     * @param rebalance
+     */
+    public void setRebalance(Rebalance rebalance) {
+        if (rebalance == null)
+            throw new NullPointerException();
+        this.rebalance = rebalance;
+    }
+
+    ArrayList<Node> getMembers() {
+        return members;
+    }
+
+    /*
+     * Takes a removed node out of the group. The remaining members still sum
+     * to the total minus the removed node's progress.
+     */
+    void remove(Node node) {
+        members.remove(node);
+        total -= node.getProgress();
+        shares = new int[members.size()];
+        room = new int[members.size()];
+    }
+
+    /**
+     * Moves the other members of node's group so that node can move by
+     * displacement, without moving node itself.
+     *
+     * @param node the member being moved
+     * @param displacement the distance node is requested to move right
+     * @param oldProgress the current progress of node
+     * @param usePreferredProgress whether moved members join the shift event
+     * @param checkOnly whether the other members only move their temporary
+     *        progress
+     * @return the distance node can move, as far as the rest of the group can
+     *         make up for it
+     */
+    int move(Node node, int displacement, int oldProgress,
+            boolean usePreferredProgress, boolean checkOnly) {
+        if (oldProgress + displacement > node.getMax()) {
+            displacement = Math.max(0, node.getMax() - oldProgress);
+        } else if (oldProgress + displacement < 0) {
+            displacement = Math.min(0, -oldProgress);
+        }
+        if (displacement == 0) {
+            return 0;
+        }
+
+        // How far each of the other members can go in the opposite direction
+        long capacity = 0;
+        for (int i = 0; i < members.size(); i++) {
+            final Node member = members.get(i);
+            if (member == node || member.isPinned()) {
+                shares[i] = 0;
+            } else {
+                shares[i] = displacement > 0 ? member.getProgress() : member
+                        .getMax() - member.getProgress();
+            }
+            capacity += shares[i];
+        }
+        if (capacity < Math.abs(displacement)) {
+            displacement = displacement > 0 ? (int) capacity : (int) -capacity;
+            if (displacement == 0) {
+                return 0;
+            }
+        }
+
+        final int amount = Math.abs(displacement);
+        if (rebalance == Rebalance.PRIORITY) {
+            int remaining = amount;
+            for (int i = 0; i < members.size(); i++) {
+                shares[i] = Math.min(shares[i], remaining);
+                remaining -= shares[i];
+            }
+        } else {
+            // Every member first gets its exact share rounded down. Less than
+            // one unit per member is left over, which goes to the first
+            // members that still have room, one each
+            int remaining = amount;
+            for (int i = 0; i < members.size(); i++) {
+                room[i] = shares[i];
+                shares[i] = (int) ((long) amount * room[i] / capacity);
+                remaining -= shares[i];
+            }
+            for (int i = 0; i < members.size() && remaining > 0; i++) {
+                if (shares[i] < room[i]) {
+                    shares[i]++;
+                    remaining--;
+                }
+            }
+        }
+
+        final int direction = displacement > 0 ? -1 : 1;
+        for (int i = 0; i < members.size(); i++) {
+            if (shares[i] == 0) {
+                continue;
+            }
+            final Node member = members.get(i);
+            if (usePreferredProgress) {
+                member.joinShiftEvent();
+            }
+            member.applyProgress(member.getProgress() + direction
+                    * shares[i], checkOnly);
+        }
+        return displacement;
+    }
+}
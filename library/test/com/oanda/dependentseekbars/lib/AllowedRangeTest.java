@@ -0,0 +1,166 @@
+package com.oanda.dependentseekbars.lib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import android.content.Context;
+
+import com.oanda.dependentseekbars.lib.DependencyGraph.Node;
+import com.oanda.dependentseekbars.lib.DependentSeekBar.Direction;
+
+/*
+ * Tests the shading of the allowed range, which needs the package-private
+ * solver hook to count the dry runs made for the bounds.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AllowedRangeTest {
+    private DependentSeekBarManager manager;
+    private Context context;
+    private CountingSolver solver;
+
+    /*
+     * Solves like the default solver, counting the dry runs.
+     */
+    private static class CountingSolver implements ConstraintSolver {
+        private final ConstraintSolver solver = new GreedyConstraintSolver();
+        int dryRuns = 0;
+
+        @Override
+        public int canMove(Node node, int displacement, int oldProgress,
+                boolean checkOnly) {
+            if (checkOnly) {
+                dryRuns++;
+            }
+            return solver.canMove(node, displacement, oldProgress, checkOnly);
+        }
+
+        @Override
+        public int canMoveGroup(SeekBarGroup group, int displacement,
+                boolean checkOnly) {
+            if (checkOnly) {
+                dryRuns++;
+            }
+            return solver.canMoveGroup(group, displacement, checkOnly);
+        }
+
+        @Override
+        public void checkPreferredProgress(Node node, Direction direction) {
+            solver.checkPreferredProgress(node, direction);
+        }
+
+        @Override
+        public void startShiftEvent(Node node) {
+            solver.startShiftEvent(node);
+        }
+
+        @Override
+        public void endShiftEvent(Node node) {
+            solver.endShiftEvent(node);
+        }
+    }
+
+    @Before
+    public void setup() {
+        context = Robolectric.getShadowApplication().getApplicationContext();
+        manager = new DependentSeekBarManager();
+        solver = new CountingSolver();
+        manager.setConstraintSolver(solver);
+        Robolectric.pauseMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        Robolectric.unPauseMainLooper();
+    }
+
+    /*
+     * Creates the chain 0 < 1 < 2 with every seek bar attached and shading
+     * its allowed range.
+     */
+    private DependentSeekBar[] shadedChain(int... progress) {
+        DependentSeekBar[] seekBars = new DependentSeekBar[progress.length];
+        for (int i = 0; i < progress.length; i++) {
+            seekBars[i] = manager.createSeekBar(context, progress[i]);
+            if (i > 0) {
+                seekBars[i - 1].addDependencies(
+                        DependentSeekBar.Dependency.LESS_THAN, seekBars[i]);
+            }
+        }
+        for (DependentSeekBar seekBar : seekBars) {
+            seekBar.onAttachedToWindow();
+            seekBar.setShowAllowedRange(true);
+        }
+        Robolectric.runUiThreadTasks();
+        return seekBars;
+    }
+
+    /*
+     * Tests that dragging the first bar of the chain 0 < 1 < 2 with shifting
+     * allowed makes no dry runs for the shaded ranges, as they don't depend
+     * on the progress, and that changing a maximum refreshes them.
+     */
+    @Test
+    public void dragTest() {
+        DependentSeekBar[] chain = shadedChain(10, 20, 30);
+        assertEquals(98, chain[0].getRestrictedMax());
+        assertEquals(1, chain[1].getRestrictedMin());
+        assertEquals(99, chain[1].getRestrictedMax());
+        final int dryRuns = solver.dryRuns;
+
+        chain[0].startShiftEvent();
+        for (int progress = 11; progress <= 60; progress++) {
+            chain[0].setProgress(progress);
+        }
+        chain[0].endShiftEvent();
+        Robolectric.runUiThreadTasks();
+        assertEquals(62, chain[2].getProgress());
+        assertEquals(dryRuns, solver.dryRuns);
+
+        chain[2].setMax(70);
+        Robolectric.runUiThreadTasks();
+        assertTrue(solver.dryRuns > dryRuns);
+        assertEquals(68, chain[0].getRestrictedMax());
+        assertEquals(69, chain[1].getRestrictedMax());
+    }
+
+    /*
+     * Tests that without shifting the shaded ranges of the chain 0 < 1 < 2
+     * follow the progress of the neighbours.
+     */
+    @Test
+    public void noShiftingTest() {
+        manager.setShiftingAllowed(false);
+        DependentSeekBar[] chain = shadedChain(10, 20, 30);
+        assertEquals(11, chain[1].getRestrictedMin());
+        assertEquals(29, chain[1].getRestrictedMax());
+
+        chain[0].setProgress(15);
+        chain[2].setProgress(25);
+        assertEquals(16, chain[1].getRestrictedMin());
+        assertEquals(24, chain[1].getRestrictedMax());
+    }
+
+    /*
+     * Tests that a move of the middle bar of the chain 0 < 1 < 2 which is
+     * rejected puts its thumb back without making the shaded ranges work out
+     * their bounds again.
+     */
+    @Test
+    public void rejectedMoveTest() {
+        manager.setShiftingAllowed(false);
+        DependentSeekBar[] chain = shadedChain(10, 11, 30);
+        final int dryRuns = solver.dryRuns;
+
+        chain[1].setProgress(5);
+        assertEquals(11, chain[1].getProgress());
+        assertEquals(11, manager.getProgressById(chain[1].getSeekBarId()));
+        assertEquals(dryRuns, solver.dryRuns);
+    }
+}
@@ -2,8 +2,8 @@ package com.oanda.dependentseekbars.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 
 import org.junit.Before;
@@ -29,7 +29,6 @@ public class DependencyGraphTest {
     private Context context;
     private ArrayList<Node> nodes;
     private ArrayList<DependentSeekBar> seekBars;
-    private Method isAcyclicMethod;
 
     @Before
     public void setup() {
@@ -50,17 +49,6 @@ public class DependencyGraphTest {
             seekBars.add(dsb);
         }
 
-        // set isAcycilic() to public so it can be tested
-        try {
-            isAcyclicMethod = dg.getClass().getDeclaredMethod("containsCycle",
-                    new Class[] { Node.class, int.class });
-            isAcyclicMethod.setAccessible(true);
-        } catch (NoSuchMethodException e) {
-            e.printStackTrace();
-        } catch (SecurityException e) {
-            e.printStackTrace();
-        }
-
     }
 
     // removes all dependencies in a graph
@@ -83,10 +71,6 @@ public class DependencyGraphTest {
         for (int i = 0; i < NUM_NODES; i++) {
             assertEquals(nodes.get(i).getParents().size(), 0);
             assertEquals(nodes.get(i).getChildren().size(), 0);
-            assertFalse(((Boolean) isAcyclicMethod.invoke(dg, nodes.get(i),
-                    DependencyGraph.CHECK_LT_DEPENDENCIES)).booleanValue());
-            assertFalse(((Boolean) isAcyclicMethod.invoke(dg, nodes.get(i),
-                    DependencyGraph.CHECK_GT_DEPENDENCIES)).booleanValue());
         }
     }
 
@@ -166,6 +150,33 @@ public class DependencyGraphTest {
         // TODO add test for when restructuring is true
     }
 
+    /*
+     * Adds dependencies 0 < 1 < 3 and 2 on its own, then removes seekbar 1.
+     * Passes when the components are merged as edges are added and split
+     * again when the node joining them is removed.
+     */
+    @Test
+    public void componentsTest() throws Exception {
+        resetGraph();
+        assertEquals(NUM_NODES, dg.getComponentCount());
+
+        DependentSeekBar[] limitingSeekBars = { nodes.get(1).getSeekBar() };
+        dg.addLessThanDependencies(nodes.get(0).getSeekBar(), limitingSeekBars);
+        limitingSeekBars[0] = nodes.get(3).getSeekBar();
+        dg.addLessThanDependencies(nodes.get(1).getSeekBar(), limitingSeekBars);
+
+        assertEquals(2, dg.getComponentCount());
+        assertTrue(dg.inSameComponent(nodes.get(0), nodes.get(3)));
+        assertFalse(dg.inSameComponent(nodes.get(0), nodes.get(2)));
+        assertEquals(3, dg.getComponent(nodes.get(3)).size());
+
+        dg.removeSeekBar(nodes.get(1).getSeekBar(), false);
+
+        assertEquals(3, dg.getComponentCount());
+        assertFalse(dg.inSameComponent(nodes.get(0), nodes.get(3)));
+        assertEquals(1, dg.getComponent(nodes.get(0)).size());
+    }
+
     /*
      * Tests if adding already existing dependencies work. Test Case: node
      */
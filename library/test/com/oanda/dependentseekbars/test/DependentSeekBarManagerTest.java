@@ -1,6 +1,9 @@
 package com.oanda.dependentseekbars.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -9,9 +12,22 @@ import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 
 import android.content.Context;
+import android.os.Parcel;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.SeekBar;
+import android.widget.SeekBar.OnSeekBarChangeListener;
 
+import com.oanda.dependentseekbars.lib.DependencyGraph;
+import com.oanda.dependentseekbars.lib.DependentMultiThumbSeekBar;
+import com.oanda.dependentseekbars.lib.DependentRangeSeekBar;
 import com.oanda.dependentseekbars.lib.DependentSeekBar;
 import com.oanda.dependentseekbars.lib.DependentSeekBarManager;
+import com.oanda.dependentseekbars.lib.DependentSeekBarsView;
+import com.oanda.dependentseekbars.lib.Lane;
+import com.oanda.dependentseekbars.lib.SavedModel;
+import com.oanda.dependentseekbars.lib.SeekBarGroup;
+import com.oanda.dependentseekbars.lib.SumConstraint;
 
 @RunWith(RobolectricTestRunner.class)
 public class DependentSeekBarManagerTest {
@@ -23,7 +39,39 @@ public class DependentSeekBarManagerTest {
         context = Robolectric.getShadowApplication().getApplicationContext();
         manager = new DependentSeekBarManager();
     }
-    
+
+    /*
+     * Creates a DependentSeekBar for each progress, each one less than the
+     * next.
+     */
+    private DependentSeekBar[] chain(int... progress) {
+        DependentSeekBar[] seekBars = new DependentSeekBar[progress.length];
+        for (int i = 0; i < progress.length; i++) {
+            seekBars[i] = manager.createSeekBar(context, progress[i]);
+            if (i > 0) {
+                seekBars[i - 1].addDependencies(
+                        DependentSeekBar.Dependency.LESS_THAN, seekBars[i]);
+            }
+        }
+        return seekBars;
+    }
+
+    /*
+     * Like chain, with seek bars which only exist in the manager.
+     * @return the ids of the seek bars
+     */
+    private int[] virtualChain(int... progress) {
+        int[] ids = new int[progress.length];
+        for (int i = 0; i < progress.length; i++) {
+            ids[i] = manager.addVirtualSeekBar(progress[i], 100);
+            if (i > 0) {
+                manager.addDependenciesById(ids[i - 1],
+                        DependentSeekBar.Dependency.LESS_THAN, ids[i]);
+            }
+        }
+        return ids;
+    }
+
     /*
      * Tests if adding and removing DependentSeekBars are done properly.
      */
@@ -43,4 +91,969 @@ public class DependentSeekBarManagerTest {
         manager.removeSeekBar(dsb,false);
         assertEquals(40, manager.getSeekBar(0).getProgress());
     }
-}
\ No newline at end of file
+
+    /*
+     * Tests that ids stay the same when other DependentSeekBars are removed,
+     * while indices shift down.
+     */
+    @Test
+    public void seekBarIdTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 10);
+        DependentSeekBar second = manager.createSeekBar(context, 20);
+        DependentSeekBar third = manager.createSeekBar(context, 30);
+        int thirdId = third.getSeekBarId();
+
+        assertTrue(manager.removeSeekBar(second, false));
+        assertFalse(manager.contains(second));
+        assertFalse(manager.removeSeekBar(second, false));
+        assertEquals(-1, second.getSeekBarId());
+        assertEquals(2, manager.getSeekBarCount());
+        assertEquals(thirdId, third.getSeekBarId());
+        assertEquals(third, manager.getSeekBarById(thirdId));
+        assertEquals(third, manager.getSeekBar(1));
+        assertEquals(first, manager.getSeekBarById(first.getSeekBarId()));
+
+        // The removed DependentSeekBar can be added again, at the end
+        manager.addSeekBar(second);
+        assertEquals(second, manager.getSeekBar(2));
+        assertEquals(second, manager.getSeekBarById(second.getSeekBarId()));
+        assertEquals(3, manager.getSeekBarCount());
+    }
+
+    /*
+     * Tests that a DependentSeekBar keeps its progress and pinned state when
+     * it moves between the manager's store and a store of its own.
+     */
+    @Test
+    public void progressStoreTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 10);
+        DependentSeekBar second = manager.createSeekBar(context, 20);
+        second.setPinned(true);
+
+        assertTrue(manager.removeSeekBar(second, false));
+        assertEquals(20, second.getProgress());
+        assertTrue(second.isPinned());
+        second.setPinned(false);
+
+        manager.addSeekBar(second);
+        assertEquals(20, second.getProgress());
+        assertFalse(second.isPinned());
+        first.addDependencies(DependentSeekBar.Dependency.LESS_THAN, second);
+        first.setProgress(50);
+        assertEquals(50, first.getProgress());
+        assertEquals(51, second.getProgress());
+    }
+
+    /*
+     * Tests if the minimal displacement shift mode only moves the bars that
+     * are in the way, and only as far as needed, for the chain 0 < 1 < 2.
+     */
+    @Test
+    public void minimalDisplacementShiftTest() {
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar first = chain[0];
+        DependentSeekBar second = chain[1];
+        DependentSeekBar third = chain[2];
+
+        first.setProgress(25);
+        assertEquals(25, first.getProgress());
+        assertEquals(26, second.getProgress());
+        assertEquals(30, third.getProgress());
+
+        // The chain can only be pushed until the last bar reaches its maximum
+        first.setProgress(100);
+        assertEquals(98, first.getProgress());
+        assertEquals(99, second.getProgress());
+        assertEquals(100, third.getProgress());
+    }
+
+    /*
+     * Tests if a pinned bar in the middle of the chain 0 < 1 < 2 is a wall
+     * for the bars on both sides of it, in both shift modes, and is not moved
+     * itself.
+     */
+    @Test
+    public void pinnedSeekBarTest() {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        chain[1].setPinned(true);
+
+        chain[0].setProgress(50);
+        assertEquals(19, chain[0].getProgress());
+        assertEquals(20, chain[1].getProgress());
+        assertEquals(30, chain[2].getProgress());
+
+        chain[2].setProgress(5);
+        assertEquals(21, chain[2].getProgress());
+        assertEquals(20, chain[1].getProgress());
+
+        chain[1].setProgress(60);
+        assertEquals(20, chain[1].getProgress());
+
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        chain[0].setProgress(50);
+        assertEquals(19, chain[0].getProgress());
+        chain[2].setProgress(0);
+        assertEquals(21, chain[2].getProgress());
+
+        chain[1].setPinned(false);
+        chain[0].setProgress(50);
+        assertEquals(50, chain[0].getProgress());
+        assertEquals(51, chain[1].getProgress());
+    }
+
+    /*
+     * Tests if a move which runs out of budget on the chain 0 < 1 < 2 stops
+     * part of the way, and is carried on by the passes posted after it until
+     * it is done, even when a listener runs queries in between.
+     */
+    @Test
+    public void solveBudgetTest() {
+        final DependentSeekBar[] chain = chain(10, 20, 30);
+        final int[] restrictedMax = new int[1];
+        manager.setOnConstraintsSolvedListener(
+                new DependentSeekBarManager.OnConstraintsSolvedListener() {
+                    @Override
+                    public void onConstraintsSolved(
+                            DependentSeekBarManager manager, int[] ids,
+                            int[] oldProgress, int[] newProgress) {
+                        restrictedMax[0] = chain[2].getRestrictedMax();
+                    }
+                });
+        manager.setSolveVisitBudget(1);
+        Robolectric.pauseMainLooper();
+
+        // Only the moved bar fits in the budget, so it stops at the bar it
+        // would have to push
+        chain[0].setProgress(50);
+        assertEquals(19, chain[0].getProgress());
+        assertEquals(20, chain[1].getProgress());
+        assertEquals(30, chain[2].getProgress());
+        assertEquals(100, restrictedMax[0]);
+
+        Robolectric.runUiThreadTasks();
+        assertEquals(50, chain[0].getProgress());
+        assertEquals(51, chain[1].getProgress());
+        assertEquals(52, chain[2].getProgress());
+        Robolectric.unPauseMainLooper();
+    }
+
+    /*
+     * Tests if, during a shift event in the minimal displacement shift mode,
+     * bars that were pushed follow the dragged bar back to where they were
+     * when the event started, for the chain 0 < 1 < 2.
+     */
+    @Test
+    public void minimalDisplacementShiftEventTest() {
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar first = chain[0];
+        DependentSeekBar second = chain[1];
+        DependentSeekBar third = chain[2];
+
+        first.startShiftEvent();
+        first.setProgress(40);
+        assertEquals(41, second.getProgress());
+        assertEquals(42, third.getProgress());
+
+        first.setProgress(25);
+        assertEquals(26, second.getProgress());
+        assertEquals(30, third.getProgress());
+
+        first.setProgress(5);
+        assertEquals(20, second.getProgress());
+        assertEquals(30, third.getProgress());
+        first.endShiftEvent();
+    }
+
+    /*
+     * Tests if scrubbing the first bar of the chain 0 < 1 < 2 back and forth
+     * during a shift event in the push shift mode, where repeated moves are
+     * replayed from a cache, leaves the bars where a single fresh move would,
+     * and that changing a maximum during the event drops the cache.
+     */
+    @Test
+    public void shiftCacheTest() {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        final int[] scrub = { 40, 25, 60, 25, 40, 60, 25, 60, 40, 25 };
+
+        // Bars pushed during the event follow the first bar back towards
+        // where they were when it started
+        chain[0].startShiftEvent();
+        for (int progress : scrub) {
+            chain[0].setProgress(progress);
+            assertEquals(progress, chain[0].getProgress());
+            assertEquals(Math.max(20, progress + 1), chain[1].getProgress());
+            assertEquals(Math.max(30, progress + 2), chain[2].getProgress());
+        }
+
+        chain[0].setProgress(90);
+        assertEquals(98, chain[0].getRestrictedMax());
+        chain[0].setProgress(25);
+        chain[2].setMax(70);
+        assertEquals(68, chain[0].getRestrictedMax());
+        chain[0].setProgress(90);
+        assertEquals(68, chain[0].getProgress());
+        assertEquals(69, chain[1].getProgress());
+        assertEquals(70, chain[2].getProgress());
+        chain[0].endShiftEvent();
+    }
+
+    /*
+     * Tests if the feasibility checks report the range the middle bar of the
+     * chain 0 < 1 < 2 can be moved to, without moving any of the bars.
+     */
+    @Test
+    public void feasibilityTest() {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar first = chain[0];
+        DependentSeekBar second = chain[1];
+        DependentSeekBar third = chain[2];
+
+        assertTrue(second.isFeasible(1));
+        assertTrue(second.isFeasible(99));
+        assertFalse(second.isFeasible(0));
+        assertFalse(second.isFeasible(100));
+        assertEquals(99, second.clampToFeasible(150));
+        assertEquals(10, first.getProgress());
+        assertEquals(20, second.getProgress());
+        assertEquals(30, third.getProgress());
+
+        manager.setShiftingAllowed(false);
+        assertEquals(11, second.getRestrictedMin());
+        assertEquals(29, second.getRestrictedMax());
+    }
+
+    /*
+     * Tests that the allowed range shown by a seek bar comes from the bounds
+     * the manager keeps for the seek bar it is bound to, and follows moves of
+     * the other seek bars in its chain.
+     */
+    @Test
+    public void allowedRangeTest() {
+        int[] ids = virtualChain(10, 20, 30);
+        int first = ids[0];
+        int second = ids[1];
+        int third = ids[2];
+        manager.setShiftingAllowed(false);
+
+        DependentSeekBar bound = new DependentSeekBar(context,
+                (DependentSeekBarManager) null);
+        bound.setShowAllowedRange(true);
+        assertTrue(bound.isShowingAllowedRange());
+        manager.bindSeekBar(bound, second);
+        assertEquals(11, bound.getRestrictedMin());
+        assertEquals(29, bound.getRestrictedMax());
+
+        manager.moveToById(third, 50);
+        assertEquals(49, bound.getRestrictedMax());
+
+        manager.bindSeekBar(bound, third);
+        assertEquals(21, bound.getRestrictedMin());
+        assertEquals(100, bound.getRestrictedMax());
+    }
+
+    /*
+     * Tests if bars tied together with an Equal dependency move in lock-step
+     * and push the bars their partners depend on, with 1 = 0 + 5 and 1 < 2.
+     */
+    @Test
+    public void equalDependencyTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 10);
+        DependentSeekBar second = manager.createSeekBar(context, 15);
+        DependentSeekBar third = manager.createSeekBar(context, 30);
+        second.addEqualDependency(first, 5);
+        second.addDependencies(DependentSeekBar.Dependency.LESS_THAN, third);
+        assertEquals(1, manager.getComponentCount());
+
+        first.setProgress(40);
+        assertEquals(40, first.getProgress());
+        assertEquals(45, second.getProgress());
+        assertEquals(46, third.getProgress());
+
+        second.setProgress(99);
+        assertEquals(94, first.getProgress());
+        assertEquals(99, second.getProgress());
+        assertEquals(100, third.getProgress());
+
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        first.setProgress(20);
+        assertEquals(25, second.getProgress());
+        assertEquals(100, third.getProgress());
+        assertEquals(94, first.getRestrictedMax());
+    }
+
+    /*
+     * Tests if the other bars of a sum constraint make up for a moved bar,
+     * first proportionally and then by priority.
+     */
+    @Test
+    public void sumConstraintTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 50);
+        DependentSeekBar second = manager.createSeekBar(context, 30);
+        DependentSeekBar third = manager.createSeekBar(context, 20);
+        SumConstraint sum = manager.addSumConstraint(100, first, second, third);
+
+        first.setProgress(70);
+        assertEquals(70, first.getProgress());
+        assertEquals(18, second.getProgress());
+        assertEquals(12, third.getProgress());
+
+        sum.setRebalance(SumConstraint.Rebalance.PRIORITY);
+        first.setProgress(90);
+        assertEquals(90, first.getProgress());
+        assertEquals(0, second.getProgress());
+        assertEquals(10, third.getProgress());
+
+        third.setPinned(true);
+        first.setProgress(100);
+        assertEquals(90, first.getProgress());
+        assertEquals(90, first.getRestrictedMax());
+    }
+
+    /*
+     * Tests if tasks in a lane push each other out of the way by their
+     * durations, with tasks [10, 20), [25, 35) and [50, 60).
+     */
+    @Test
+    public void laneTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 10);
+        DependentSeekBar second = manager.createSeekBar(context, 25);
+        DependentSeekBar third = manager.createSeekBar(context, 50);
+        Lane lane = manager.createLane();
+        manager.addToLane(lane, third, 10);
+        manager.addToLane(lane, first, 10);
+        manager.addToLane(lane, second, 10);
+        assertEquals(1, manager.getComponentCount());
+        assertEquals(2, lane.getTasksOverlapping(15, 26).size());
+
+        first.setProgress(40);
+        assertEquals(40, first.getProgress());
+        assertEquals(50, second.getProgress());
+        assertEquals(60, third.getProgress());
+
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        third.setProgress(0);
+        assertEquals(0, first.getProgress());
+        assertEquals(10, second.getProgress());
+        assertEquals(20, third.getProgress());
+    }
+
+    /*
+     * Tests if each end of a range pushes the bars on its own side, and if a
+     * pushed range keeps its length, with 0 < [1, 1] < 2.
+     */
+    @Test
+    public void rangeSeekBarTest() {
+        DependentSeekBar before = manager.createSeekBar(context, 10);
+        DependentRangeSeekBar range = manager.createRangeSeekBar(context, 20,
+                40, 100);
+        DependentSeekBar after = manager.createSeekBar(context, 50);
+        before.addDependencies(DependentSeekBar.Dependency.LESS_THAN, range);
+        range.addDependencies(DependentSeekBar.Dependency.LESS_THAN, after);
+
+        range.setUpperProgress(70);
+        assertEquals(20, range.getLowerProgress());
+        assertEquals(70, range.getUpperProgress());
+        assertEquals(71, after.getProgress());
+
+        range.setProgress(5);
+        assertEquals(4, before.getProgress());
+        assertEquals(70, range.getUpperProgress());
+
+        range.setProgress(80);
+        assertEquals(69, range.getLowerProgress());
+        assertEquals(70, range.getUpperProgress());
+
+        before.setProgress(90);
+        assertEquals(91, range.getLowerProgress());
+        assertEquals(92, range.getUpperProgress());
+        assertEquals(93, after.getProgress());
+    }
+
+    /*
+     * Tests that a group is pushed as a whole by a bar outside of it, while
+     * its own members still move each other individually.
+     */
+    @Test
+    public void groupTest() {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar before = chain[0];
+        DependentSeekBar start = chain[1];
+        DependentSeekBar end = chain[2];
+        SeekBarGroup task = manager.createGroup(start, end);
+        SeekBarGroup phase = manager.createGroup(task);
+        assertEquals(phase, task.getParent());
+        assertEquals(2, phase.getSeekBarCount());
+
+        before.setProgress(25);
+        assertEquals(26, start.getProgress());
+        assertEquals(36, end.getProgress());
+
+        start.setProgress(40);
+        assertEquals(41, end.getProgress());
+        assertEquals(25, before.getProgress());
+        assertEquals(40, phase.getLowerProgress());
+        assertEquals(41, phase.getUpperProgress());
+
+        assertEquals(-20, phase.moveBy(-20));
+        assertEquals(20, start.getProgress());
+        assertEquals(21, end.getProgress());
+        assertEquals(19, before.getProgress());
+
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        before.setProgress(30);
+        assertEquals(31, start.getProgress());
+        assertEquals(32, end.getProgress());
+    }
+
+    /*
+     * Tests that a bar pushed twice in one solve, once through a bar and once
+     * through the end of a range, has its view updated only once.
+     */
+    @Test
+    public void batchedUpdateTest() {
+        DependentSeekBar first = manager.createSeekBar(context, 10);
+        DependentSeekBar middle = manager.createSeekBar(context, 20);
+        DependentRangeSeekBar range = manager.createRangeSeekBar(context, 20,
+                25, 100);
+        DependentSeekBar last = manager.createSeekBar(context, 40);
+        first.addDependencies(DependentSeekBar.Dependency.LESS_THAN, middle,
+                range);
+        last.addDependencies(DependentSeekBar.Dependency.GREATER_THAN,
+                middle, range);
+        final int[] updates = new int[1];
+        last.setOnSeekBarChangeListener(new OnSeekBarChangeListener() {
+            @Override
+            public void onStopTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onStartTrackingTouch(SeekBar seekBar) {
+            }
+
+            @Override
+            public void onProgressChanged(SeekBar seekBar, int progress,
+                    boolean fromUser) {
+                updates[0]++;
+            }
+        });
+
+        first.setProgress(60);
+        assertEquals(61, middle.getProgress());
+        assertEquals(61, range.getProgress());
+        assertEquals(67, last.getProgress());
+        assertEquals(1, updates[0]);
+    }
+
+    /*
+     * Tests that the manager's listener is told about a whole cascade in one
+     * change set.
+     */
+    @Test
+    public void constraintsSolvedListenerTest() {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar unrelated = manager.createSeekBar(context, 50);
+        final int[] calls = new int[1];
+        final int[] moved = new int[4];
+        manager.setOnConstraintsSolvedListener(
+                new DependentSeekBarManager.OnConstraintsSolvedListener() {
+                    @Override
+                    public void onConstraintsSolved(
+                            DependentSeekBarManager manager, int[] ids,
+                            int[] oldProgress, int[] newProgress) {
+                        calls[0]++;
+                        for (int i = 0; i < ids.length; i++) {
+                            moved[ids[i]] = newProgress[i] - oldProgress[i];
+                        }
+                    }
+                });
+
+        chain[0].setProgress(40);
+        assertEquals(1, calls[0]);
+        assertEquals(30, moved[0]);
+        assertEquals(21, moved[1]);
+        assertEquals(12, moved[2]);
+        assertEquals(0, moved[3]);
+
+        unrelated.setProgress(60);
+        assertEquals(2, calls[0]);
+        assertEquals(10, moved[3]);
+    }
+
+    /*
+     * Tests that groups which would push each other in a circle are
+     * rejected.
+     */
+    @Test(expected = DependencyGraph.InconsistentGraphException.class)
+    public void circularGroupTest() {
+        DependentSeekBar firstStart = manager.createSeekBar(context, 10);
+        DependentSeekBar secondStart = manager.createSeekBar(context, 20);
+        DependentSeekBar secondEnd = manager.createSeekBar(context, 30);
+        DependentSeekBar firstEnd = manager.createSeekBar(context, 40);
+        firstStart.addDependencies(DependentSeekBar.Dependency.LESS_THAN,
+                secondStart);
+        secondEnd.addDependencies(DependentSeekBar.Dependency.LESS_THAN,
+                firstEnd);
+        manager.createGroup(firstStart, firstEnd);
+        manager.createGroup(secondStart, secondEnd);
+    }
+
+    /*
+     * Tests that seek bars without a view are shifted like any other, and
+     * that a view bound to one shows and moves it.
+     */
+    @Test
+    public void virtualSeekBarTest() {
+        final int count = 200;
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = manager.addVirtualSeekBar(i, 1000);
+            if (i > 0) {
+                manager.addDependenciesById(ids[i - 1],
+                        DependentSeekBar.Dependency.LESS_THAN, ids[i]);
+            }
+        }
+        assertEquals(count, manager.getSeekBarCount());
+        assertNull(manager.getSeekBarById(ids[0]));
+
+        assertTrue(manager.moveToById(ids[0], 500));
+        assertEquals(500, manager.getProgressById(ids[0]));
+        assertEquals(699, manager.getProgressById(ids[count - 1]));
+
+        DependentSeekBar view = new DependentSeekBar(context,
+                (DependentSeekBarManager) null);
+        manager.bindSeekBar(view, ids[10]);
+        assertEquals(view, manager.getSeekBarById(ids[10]));
+        assertEquals(510, view.getProgress());
+        assertEquals(1000, view.getMax());
+        assertEquals(ids[10], view.getSeekBarId());
+
+        view.setProgress(600);
+        assertEquals(600, manager.getProgressById(ids[10]));
+        assertEquals(601, manager.getProgressById(ids[11]));
+
+        // Recycling the view leaves the seek bar it showed where it was
+        manager.bindSeekBar(view, ids[20]);
+        assertNull(manager.getSeekBarById(ids[10]));
+        assertEquals(610, view.getProgress());
+        assertEquals(600, manager.getProgressById(ids[10]));
+
+        manager.unbindSeekBar(view);
+        assertEquals(-1, view.getSeekBarId());
+        assertEquals(610, manager.getProgressById(ids[20]));
+    }
+
+    /*
+     * Tests that dragging a thumb of a DependentSeekBarsView shifts the seek
+     * bars it depends on, and that views bound to them follow.
+     */
+    @Test
+    public void seekBarsViewTest() {
+        int[] ids = virtualChain(10, 20, 30);
+        int first = ids[0];
+        int second = ids[1];
+        int third = ids[2];
+        DependentSeekBar bound = new DependentSeekBar(context,
+                (DependentSeekBarManager) null);
+        manager.bindSeekBar(bound, third);
+
+        DependentSeekBarsView view = new DependentSeekBarsView(context,
+                manager);
+        view.setSeekBarIds(first, second, third);
+        view.setThumbRadius(10);
+        view.setRowHeight(50);
+        view.layout(0, 0, 120, 150);
+        assertEquals(3, view.getRowCount());
+
+        // The track of the first row runs from x = 10 to x = 110
+        touch(view, MotionEvent.ACTION_DOWN, 30, 25);
+        touch(view, MotionEvent.ACTION_MOVE, 60, 25);
+        assertEquals(50, manager.getProgressById(first));
+        assertEquals(51, manager.getProgressById(second));
+        assertEquals(52, bound.getProgress());
+        touch(view, MotionEvent.ACTION_UP, 60, 25);
+
+        // Below the last row nothing is hit
+        assertFalse(touch(view, MotionEvent.ACTION_DOWN, 60, 160));
+    }
+
+    /*
+     * Tests that, with frame coalescing, several drags of the first bar of
+     * the chain 0 < 1 between two frames are solved once, at the latest
+     * position, when the frame runs.
+     */
+    @Test
+    public void frameCoalescingTest() {
+        DependentSeekBar[] chain = chain(10, 20);
+        chain[0].setPadding(0, 0, 0, 0);
+        chain[0].layout(0, 0, 100, 20);
+        final int[] calls = new int[1];
+        manager.setOnConstraintsSolvedListener(
+                new DependentSeekBarManager.OnConstraintsSolvedListener() {
+                    @Override
+                    public void onConstraintsSolved(
+                            DependentSeekBarManager manager, int[] ids,
+                            int[] oldProgress, int[] newProgress) {
+                        calls[0]++;
+                    }
+                });
+        manager.setFrameCoalescing(true);
+
+        // The thumb stays where it was until the frame runs
+        touch(chain[0], MotionEvent.ACTION_DOWN, 30, 10);
+        touch(chain[0], MotionEvent.ACTION_MOVE, 40, 10);
+        touch(chain[0], MotionEvent.ACTION_MOVE, 50, 10);
+        assertEquals(0, calls[0]);
+        assertEquals(10, chain[0].getProgress());
+        assertEquals(20, chain[1].getProgress());
+
+        // Turning coalescing off runs the pending frame
+        manager.setFrameCoalescing(false);
+        assertEquals(1, calls[0]);
+        assertEquals(50, chain[0].getProgress());
+        assertEquals(51, chain[1].getProgress());
+        touch(chain[0], MotionEvent.ACTION_UP, 50, 10);
+    }
+
+    /*
+     * Tests that drags of the first bar of the chain 0 < 1 < 2 are solved on
+     * the worker thread in the minimal displacement shift mode only. Of
+     * several drags only the latest is applied, a result is solved again on
+     * the UI thread when the chain has changed in the meantime, and letting
+     * go of the thumb cancels the solve in flight.
+     */
+    @Test
+    public void asyncSolvingTest() throws InterruptedException {
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        chain[0].setPadding(0, 0, 0, 0);
+        chain[0].layout(0, 0, 100, 20);
+        final int[] calls = new int[1];
+        manager.setOnConstraintsSolvedListener(
+                new DependentSeekBarManager.OnConstraintsSolvedListener() {
+                    @Override
+                    public void onConstraintsSolved(
+                            DependentSeekBarManager manager, int[] ids,
+                            int[] oldProgress, int[] newProgress) {
+                        calls[0]++;
+                    }
+                });
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        manager.setAsyncSolving(true);
+        Robolectric.pauseMainLooper();
+
+        touch(chain[0], MotionEvent.ACTION_DOWN, 15, 10);
+        touch(chain[0], MotionEvent.ACTION_MOVE, 40, 10);
+        touch(chain[0], MotionEvent.ACTION_MOVE, 50, 10);
+        assertEquals(20, chain[1].getProgress());
+        runUiThreadTasksUntil(calls, 1);
+        assertEquals(1, calls[0]);
+        assertEquals(50, chain[0].getProgress());
+        assertEquals(51, chain[1].getProgress());
+        assertEquals(52, chain[2].getProgress());
+
+        // The last bar moves while the drag is being solved, so the result
+        // no longer applies
+        touch(chain[0], MotionEvent.ACTION_MOVE, 70, 10);
+        chain[2].setProgress(90);
+        runUiThreadTasksUntil(calls, 3);
+        assertEquals(70, chain[0].getProgress());
+        assertEquals(71, chain[1].getProgress());
+        assertEquals(90, chain[2].getProgress());
+
+        touch(chain[0], MotionEvent.ACTION_MOVE, 80, 10);
+        touch(chain[0], MotionEvent.ACTION_UP, 80, 10);
+        assertEquals(4, calls[0]);
+        assertEquals(81, chain[1].getProgress());
+        Thread.sleep(50);
+        Robolectric.runUiThreadTasks();
+        assertEquals(4, calls[0]);
+
+        // Other shift modes are solved on the UI thread
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.PUSH);
+        touch(chain[0], MotionEvent.ACTION_DOWN, 85, 10);
+        assertEquals(86, chain[1].getProgress());
+        touch(chain[0], MotionEvent.ACTION_UP, 85, 10);
+
+        manager.setAsyncSolving(false);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (hasSolverThread() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(hasSolverThread());
+        Robolectric.unPauseMainLooper();
+    }
+
+    /*
+     * Tests that with asynchronous solving enabled, dragging the lower thumb
+     * of the range in 0 < [1, 1] < 2 leaves the upper end where it is.
+     */
+    @Test
+    public void asyncRangeSolvingTest() throws InterruptedException {
+        DependentSeekBar before = manager.createSeekBar(context, 10);
+        DependentRangeSeekBar range = manager.createRangeSeekBar(context, 20,
+                40, 100);
+        DependentSeekBar after = manager.createSeekBar(context, 50);
+        before.addDependencies(DependentSeekBar.Dependency.LESS_THAN, range);
+        range.addDependencies(DependentSeekBar.Dependency.LESS_THAN, after);
+        range.setPadding(0, 0, 0, 0);
+        range.layout(0, 0, 100, 20);
+        manager.setShiftMode(DependentSeekBarManager.ShiftMode.MINIMAL_DISPLACEMENT);
+        manager.setAsyncSolving(true);
+        Robolectric.pauseMainLooper();
+
+        touch(range, MotionEvent.ACTION_DOWN, 20, 10);
+        touch(range, MotionEvent.ACTION_MOVE, 5, 10);
+        assertEquals(4, before.getProgress());
+        assertEquals(5, range.getLowerProgress());
+        assertEquals(40, range.getUpperProgress());
+
+        touch(range, MotionEvent.ACTION_MOVE, 30, 10);
+        touch(range, MotionEvent.ACTION_UP, 30, 10);
+        Thread.sleep(50);
+        Robolectric.runUiThreadTasks();
+        assertEquals(4, before.getProgress());
+        assertEquals(30, range.getLowerProgress());
+        assertEquals(40, range.getUpperProgress());
+        assertEquals(50, after.getProgress());
+
+        manager.setAsyncSolving(false);
+        Robolectric.unPauseMainLooper();
+    }
+
+    /*
+     * Tests that progress posted from other threads is conflated to the
+     * latest value of each seek bar and applied in a single solve.
+     */
+    @Test
+    public void postedProgressTest() throws InterruptedException {
+        int[] ids = virtualChain(10, 20);
+        final int first = ids[0];
+        final int second = ids[1];
+        final int third = manager.addVirtualSeekBar(30, 100);
+        final int[] calls = new int[1];
+        manager.setOnConstraintsSolvedListener(
+                new DependentSeekBarManager.OnConstraintsSolvedListener() {
+                    @Override
+                    public void onConstraintsSolved(
+                            DependentSeekBarManager manager, int[] ids,
+                            int[] oldProgress, int[] newProgress) {
+                        calls[0]++;
+                    }
+                });
+
+        Thread[] feeds = new Thread[2];
+        for (int i = 0; i < feeds.length; i++) {
+            final int id = i == 0 ? first : third;
+            feeds[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int progress = 0; progress <= 60; progress++) {
+                        manager.postProgressById(id, progress);
+                    }
+                }
+            });
+            feeds[i].start();
+        }
+        for (Thread feed : feeds) {
+            feed.join();
+        }
+        assertEquals(10, manager.getProgressById(first));
+
+        manager.flushPostedProgress();
+        assertEquals(1, calls[0]);
+        assertEquals(60, manager.getProgressById(first));
+        assertEquals(61, manager.getProgressById(second));
+        assertEquals(60, manager.getProgressById(third));
+
+        // Nothing is left to apply
+        manager.flushPostedProgress();
+        assertEquals(1, calls[0]);
+    }
+
+    /*
+     * Tests that progress posted for a seek bar which is removed before it is
+     * applied is not applied to a seek bar which is given the same id later.
+     */
+    @Test
+    public void postedProgressRemovedTest() {
+        DependentSeekBar removed = manager.createSeekBar(context, 10);
+        final int id = removed.getSeekBarId();
+        manager.postProgressById(id, 60);
+        manager.removeSeekBar(removed, false);
+        DependentSeekBar added = manager.createSeekBar(context, 20);
+        assertEquals(id, added.getSeekBarId());
+        manager.flushPostedProgress();
+        assertEquals(20, added.getProgress());
+
+        manager.removeSeekBar(added, false);
+        manager.postProgressById(id, 70);
+        added = manager.createSeekBar(context, 30);
+        assertEquals(id, added.getSeekBarId());
+        manager.flushPostedProgress();
+        assertEquals(30, added.getProgress());
+
+        manager.postProgressById(id, 40);
+        manager.flushPostedProgress();
+        assertEquals(40, added.getProgress());
+    }
+
+    /*
+     * Tests that progress posted for the lower end of a range moves it the
+     * same way as dragging its thumb does, with 0 < [1, 1] < 2.
+     */
+    @Test
+    public void postedRangeProgressTest() {
+        DependentSeekBar before = manager.createSeekBar(context, 10);
+        DependentRangeSeekBar range = manager.createRangeSeekBar(context, 20,
+                40, 100);
+        DependentSeekBar after = manager.createSeekBar(context, 50);
+        before.addDependencies(DependentSeekBar.Dependency.LESS_THAN, range);
+        range.addDependencies(DependentSeekBar.Dependency.LESS_THAN, after);
+
+        manager.postProgressById(range.getSeekBarId(), 5);
+        manager.flushPostedProgress();
+        assertEquals(4, before.getProgress());
+        assertEquals(5, range.getLowerProgress());
+        assertEquals(40, range.getUpperProgress());
+        assertEquals(50, after.getProgress());
+
+        manager.postProgressById(range.getSeekBarId(), 80);
+        manager.flushPostedProgress();
+        assertEquals(39, range.getLowerProgress());
+        assertEquals(40, range.getUpperProgress());
+        assertEquals(50, after.getProgress());
+    }
+
+    /*
+     * Tests that a model saved in a Parcel is restored into a new manager
+     * with the same ids, progress and dependencies, and that new views can be
+     * bound to it.
+     */
+    @Test
+    public void savedModelTest() {
+        DependentSeekBar removed = manager.createSeekBar(context, 0);
+        DependentSeekBar[] chain = chain(10, 20, 30);
+        DependentSeekBar first = chain[0];
+        DependentSeekBar second = chain[1];
+        DependentSeekBar third = chain[2];
+        int twin = manager.addVirtualSeekBar(35, 100);
+        int otherTwin = manager.addVirtualSeekBar(35, 100);
+        manager.addDependenciesById(otherTwin,
+                DependentSeekBar.Dependency.EQUAL, twin);
+        third.setPinned(true);
+        manager.removeSeekBar(removed, false);
+
+        Parcel parcel = Parcel.obtain();
+        manager.saveModel().writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        SavedModel model = SavedModel.CREATOR.createFromParcel(parcel);
+        assertEquals(5, model.getSeekBarCount());
+
+        DependentSeekBarManager restored = new DependentSeekBarManager();
+        restored.restoreModel(model);
+        assertEquals(5, restored.getSeekBarCount());
+        assertEquals(2, restored.getComponentCount());
+        assertEquals(35, restored.getProgressById(twin));
+
+        DependentSeekBar newSecond = new DependentSeekBar(context,
+                (DependentSeekBarManager) null);
+        restored.bindSeekBar(newSecond, second.getSeekBarId());
+        assertEquals(20, newSecond.getProgress());
+        // The third seek bar is pinned at 30
+        assertFalse(newSecond.moveTo(40));
+        assertTrue(newSecond.moveTo(11));
+        assertEquals(10, restored.getProgressById(first.getSeekBarId()));
+        assertTrue(newSecond.moveTo(5));
+        assertEquals(4, restored.getProgressById(first.getSeekBarId()));
+
+        assertTrue(restored.moveToById(twin, 60));
+        assertEquals(60, restored.getProgressById(otherTwin));
+
+        // The id which was free when the model was saved is used first
+        assertEquals(0, restored.addVirtualSeekBar(0, 100));
+    }
+
+    /*
+     * Tests that the views of a retained manager can be let go and replaced
+     * without adding the seek bars or dependencies again.
+     */
+    @Test
+    public void unbindAllSeekBarsTest() {
+        DependentSeekBar[] chain = chain(10, 20);
+        int firstId = chain[0].getSeekBarId();
+        int secondId = chain[1].getSeekBarId();
+
+        manager.unbindAllSeekBars();
+        assertNull(manager.getSeekBarById(firstId));
+        assertEquals(2, manager.getSeekBarCount());
+
+        DependentSeekBar newFirst = new DependentSeekBar(context,
+                (DependentSeekBarManager) null);
+        manager.bindSeekBar(newFirst, firstId);
+        assertEquals(newFirst, manager.getSeekBarById(firstId));
+        assertTrue(newFirst.moveTo(50));
+        assertEquals(51, manager.getProgressById(secondId));
+    }
+
+    @Test
+    public void multiThumbSeekBarTest() {
+        DependentMultiThumbSeekBar track = new DependentMultiThumbSeekBar(
+                context, manager, 100, 20, 40, 60);
+        int other = manager.addVirtualSeekBar(70, 100);
+        manager.addDependenciesById(track.getThumbId(2),
+                DependentSeekBar.Dependency.LESS_THAN, other);
+        track.setThumbRadius(10);
+        track.setRowHeight(50);
+        track.layout(0, 0, 120, 50);
+        assertEquals(3, track.getThumbCount());
+        assertEquals(1, track.getRowCount());
+
+        // The middle thumb is at x = 50, the closest one to x = 52
+        touch(track, MotionEvent.ACTION_DOWN, 52, 25);
+        touch(track, MotionEvent.ACTION_MOVE, 90, 25);
+        assertEquals(20, track.getThumbProgress(0));
+        assertEquals(80, track.getThumbProgress(1));
+        assertEquals(81, track.getThumbProgress(2));
+        assertEquals(82, manager.getProgressById(other));
+        touch(track, MotionEvent.ACTION_UP, 90, 25);
+
+        // Dragging back to the left pushes the first thumb
+        touch(track, MotionEvent.ACTION_DOWN, 88, 25);
+        touch(track, MotionEvent.ACTION_MOVE, 20, 25);
+        assertEquals(9, track.getThumbProgress(0));
+        assertEquals(10, track.getThumbProgress(1));
+        touch(track, MotionEvent.ACTION_UP, 20, 25);
+    }
+
+    /*
+     * Runs the tasks posted to the UI thread until calls[0] reaches count,
+     * giving the worker thread up to five seconds to post its results.
+     */
+    private static void runUiThreadTasksUntil(int[] calls, int count)
+            throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        Robolectric.runUiThreadTasks();
+        while (calls[0] < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            Robolectric.runUiThreadTasks();
+        }
+    }
+
+    private static boolean hasSolverThread() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("DependentSeekBar solver")
+                    && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean touch(View view, int action, float x, float y) {
+        MotionEvent event = MotionEvent.obtain(0, 0, action, x, y, 0);
+        boolean handled = view.onTouchEvent(event);
+        event.recycle();
+        return handled;
+    }
+}